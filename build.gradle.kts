@@ -2,6 +2,8 @@ plugins {
     id("java")
     id("com.github.johnrengelman.shadow") version "8.1.1"
     id("maven-publish")
+    id("me.champeau.jmh") version "0.7.2"
+    id("org.graalvm.buildtools.native") version "0.10.3"
 }
 
 group = "de.InVinoVeritas"
@@ -22,12 +24,14 @@ dependencies {
     testImplementation("org.junit.platform:junit-platform-launcher:1.12.2")
 
     implementation("net.dean.jraw:JRAW:1.1.0")
+    // Same major version JRAW is built against, used directly to configure its HTTP client
+    implementation("com.squareup.okhttp3:okhttp:3.14.9")
     implementation("org.jsoup:jsoup:1.20.1")
 }
 
 java {
     toolchain {
-        languageVersion.set(JavaLanguageVersion.of(17))
+        languageVersion.set(JavaLanguageVersion.of(21))
     }
 }
 
@@ -51,6 +55,84 @@ tasks.register<JavaExec>("debugJar") {
     jvmArgs = listOf("-agentlib:jdwp=transport=dt_socket,server=y,suspend=n,address=5005")
 }
 
+// Benchmarks in src/jmh, run with "./gradlew jmh", results in build/results/jmh
+jmh {
+    warmupIterations.set(2)
+    iterations.set(5)
+    fork.set(1)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    includes.addAll(providers.gradleProperty("jmhIncludes").map { listOf(it) }.orElse(listOf()))
+}
+
+// Offline end-to-end load test against local stand-ins of the release notes page and Reddit,
+// run with "./gradlew loadTest -PloadTestArgs='--rate=2 --duration=60'", see LoadHarness for all options
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Run the bot against a local release notes page and Reddit API and report throughput and latency"
+    classpath = sourceSets.test.get().runtimeClasspath
+    mainClass.set("de.InVinoVeritas.LoadHarness")
+    args = providers.gradleProperty("loadTestArgs").map { it.trim().split(Regex("\\s+")) }.getOrElse(listOf())
+}
+
+// Fast startup builds: an AppCDS archive and a GraalVM native image, both trained by a run of the bot against local
+// stand-ins of the release notes page and Reddit. "./gradlew startupComparison" compares the builds that exist.
+val shadowJarPath: String = tasks.shadowJar.get().archiveFile.get().asFile.absolutePath
+val cdsArchivePath: String = layout.buildDirectory.file("libs/${project.name}.jsa").get().asFile.absolutePath
+val nativeMetadataPath: String = layout.buildDirectory.dir("native/agent-metadata").get().asFile.absolutePath
+val graalVmJava: List<String> = System.getenv("GRAALVM_HOME")?.let { listOf("--java=$it/bin/java") } ?: listOf()
+
+tasks.register<JavaExec>("cdsArchive") {
+    dependsOn(tasks.shadowJar)
+    group = "build"
+    description = "Record an AppCDS archive of the classes a run of the shadow jar loads"
+    classpath = sourceSets.test.get().runtimeClasspath
+    mainClass.set("de.InVinoVeritas.StartupHarness")
+    args("--mode=train", "--jar=$shadowJarPath", "--java-options=-XX:ArchiveClassesAtExit=$cdsArchivePath")
+    outputs.file(cdsArchivePath)
+}
+
+tasks.register<JavaExec>("nativeMetadata") {
+    dependsOn(tasks.shadowJar)
+    group = "build"
+    description = "Record the reflection and resource use of a run of the shadow jar with the GraalVM tracing agent"
+    classpath = sourceSets.test.get().runtimeClasspath
+    mainClass.set("de.InVinoVeritas.StartupHarness")
+    args(listOf("--mode=train", "--jar=$shadowJarPath",
+            "--java-options=-agentlib:native-image-agent=config-output-dir=$nativeMetadataPath") + graalVmJava)
+    outputs.dir(nativeMetadataPath)
+}
+
+graalvmNative {
+    binaries {
+        named("main") {
+            imageName.set(project.name)
+            mainClass.set("de.InVinoVeritas.RyzomRedditBot")
+            buildArgs.addAll(
+                "--enable-url-protocols=http,https",
+                // Recorded by nativeMetadata, on top of the metadata in src/main/resources/META-INF/native-image
+                "-H:+UnlockExperimentalVMOptions",
+                "-H:ConfigurationFileDirectories=$nativeMetadataPath",
+            )
+        }
+    }
+}
+
+tasks.named("nativeCompile") {
+    dependsOn("nativeMetadata")
+}
+
+tasks.register<JavaExec>("startupComparison") {
+    dependsOn(tasks.shadowJar)
+    group = "verification"
+    description = "Compare the startup of the shadow jar with and without AppCDS archive and of the native image"
+    classpath = sourceSets.test.get().runtimeClasspath
+    mainClass.set("de.InVinoVeritas.StartupHarness")
+    args("--jar=$shadowJarPath", "--cds=$cdsArchivePath",
+            "--native=" + layout.buildDirectory.file("native/nativeCompile/${project.name}").get().asFile.absolutePath,
+            "--runs=" + (findProperty("startupRuns") ?: "10"))
+}
+
 tasks.test {
     useJUnitPlatform()
     testLogging {
@@ -0,0 +1,64 @@
+package de.InVinoVeritas;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Release notes pages of different sizes for the benchmarks.
+ * <p>
+ * The archive pages repeat the news of the latest page with unique URLs, so their structure matches the real page.
+ */
+final class FixturePages {
+    // News on the latest page fixture
+    private static final int LATEST_NEWS = 3;
+
+    // About one release note every two weeks for five years
+    private static final int ARCHIVE_NEWS = 130;
+
+    private FixturePages() {
+    }
+
+    /**
+     * Returns the HTML of a fixture page.
+     *
+     * @param name "latest", "archive5y" or "archive10x"
+     * @return HTML of the page
+     */
+    static String load(String name) {
+        String latest = readResource("/fixtures/release_notes_latest.html");
+        return switch (name) {
+            case "latest" -> latest;
+            case "archive5y" -> repeatNews(latest, ARCHIVE_NEWS);
+            case "archive10x" -> repeatNews(latest, ARCHIVE_NEWS * 10);
+            default -> throw new IllegalArgumentException("Unknown fixture page: " + name);
+        };
+    }
+
+    private static String repeatNews(String page, int newsCount) {
+        // The news rows start after the Release-Information row and end with the main table
+        int start = page.indexOf("<tr>", page.indexOf("Release-Information"));
+        int end = page.lastIndexOf("</table>");
+        String news = page.substring(start, end);
+
+        StringBuilder sb = new StringBuilder(page.length() * newsCount / LATEST_NEWS);
+        sb.append(page, 0, start);
+        for (int copy = 0; copy * LATEST_NEWS < newsCount; copy++) {
+            sb.append(news.replace("&amp;id=", "&amp;id=" + copy + "-"));
+        }
+        sb.append(page, end, page.length());
+        return sb.toString();
+    }
+
+    private static String readResource(String path) {
+        try (InputStream in = FixturePages.class.getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalStateException("Resource " + path + " not found.");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.Headline;
+import de.InVinoVeritas.RyzomRedditBot.NewsItem;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing of release notes pages of different sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParserBenchmark {
+    @Param({"latest", "archive5y", "archive10x"})
+    public String page;
+
+    private String html;
+    private Document doc;
+    private Element newsTable;
+
+    @Setup
+    public void setup() {
+        html = FixturePages.load(page);
+        doc = Jsoup.parse(html);
+        newsTable = doc.selectFirst("table[style*=margin: 0 auto] table");
+    }
+
+    @Benchmark
+    public Document parseDocument() {
+        return Jsoup.parse(html);
+    }
+
+    @Benchmark
+    public List<NewsItem> fetchNewsFromHtml() {
+        return RyzomRedditBot.fetchNewsFromHtml(doc, null);
+    }
+
+    @Benchmark
+    public List<NewsItem> fetchNewsFromHtmlIncremental() {
+        // Typical poll: only the newest news is not posted yet
+        return RyzomRedditBot.fetchNewsFromHtml(doc, url -> !url.endsWith("id=0-412") && !url.endsWith("id=412"));
+    }
+
+    @Benchmark
+    public List<Headline> parseHeadlinesAndPoints() {
+        return RyzomRedditBot.parseHeadlinesAndPoints(newsTable);
+    }
+}
@@ -0,0 +1,70 @@
+package de.InVinoVeritas;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks loading the posted news store and looking up news in it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PostedNewsStoreBenchmark {
+    private static final String URL = "https://app.ryzom.com/app_releasenotes/index.php?lang=en&id=";
+
+    @Param({"100", "10000", "1000000"})
+    public int entries;
+
+    private Path dir;
+    private String storeFile;
+    private String legacyFile;
+    private PostedNewsStore store;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("posted-news-bench");
+        storeFile = dir.resolve("posted_news.db").toString();
+        legacyFile = dir.resolve("posted_news.txt").toString();
+
+        store = PostedNewsStore.open(storeFile, legacyFile);
+        byte[] digest = new byte[PostedNewsStore.DIGEST_LENGTH];
+        for (int i = 0; i < entries; i++) {
+            store.put(URL + i, "id" + i, digest, i);
+        }
+        store.flush();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        try (PostedNewsStore opened = PostedNewsStore.open(storeFile, legacyFile)) {
+            return opened.size();
+        }
+    }
+
+    @Benchmark
+    public boolean lookupHit() {
+        next = (next + 1) % entries;
+        return store.contains(URL + next);
+    }
+
+    @Benchmark
+    public boolean lookupMiss() {
+        return store.contains(URL + "missing-" + (next++));
+    }
+}
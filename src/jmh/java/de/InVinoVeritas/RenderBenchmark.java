@@ -0,0 +1,28 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.NewsItem;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks rendering a news item to Markdown.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RenderBenchmark {
+    private NewsItem news;
+
+    @Setup
+    public void setup() {
+        news = RyzomRedditBot.fetchNewsFromHtml(Jsoup.parse(FixturePages.load("latest")), null).get(0);
+    }
+
+    @Benchmark
+    public List<String> render() {
+        return MarkdownRenderer.render(news, true);
+    }
+}
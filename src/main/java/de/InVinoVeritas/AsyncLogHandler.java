@@ -0,0 +1,271 @@
+package de.InVinoVeritas;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Log handler that hands records to a single writer thread through a bounded queue, so logging never blocks the thread
+ * that logs.
+ * <p>
+ * The writer formats a batch of records into one reusable buffer and writes it to the log file, and optionally to a
+ * console stream, with one write and flush per batch. The log file is rotated when it reaches its size limit and at
+ * local midnight, keeping a fixed number of old files as {@code <file>.1} (newest) to {@code <file>.<count>}. When the
+ * queue is full, records are dropped and the number of dropped records is logged once there is room again.
+ */
+public class AsyncLogHandler extends Handler {
+    private static final int BATCH_SIZE = 256;
+    private static final int CLOSE_TIMEOUT_SECONDS = 5;
+
+    // Queued after the last record to stop the writer
+    private static final LogRecord STOP = new LogRecord(Level.OFF, "");
+
+    private final BlockingQueue<LogRecord> queue;
+    private final Path file;
+    private final long limitBytes;
+    private final int count;
+    private final PrintStream console;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    // State of the writer thread
+    private final StringBuilder text = new StringBuilder(8192);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer bytes = ByteBuffer.allocate(16384);
+    private FileChannel channel;
+    private long size;
+    private long nextRotationMillis;
+
+    private AsyncLogHandler(String fileName, long limitBytes, int count, int capacity, PrintStream console) throws IOException {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.file = Path.of(fileName);
+        this.limitBytes = limitBytes;
+        this.count = count;
+        this.console = console;
+        setFormatter(new ShortLogFormatter());
+
+        // A log file left from an earlier day is rotated with the first record
+        long lastModified = Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : System.currentTimeMillis();
+        openFile(lastModified);
+
+        writer = new Thread(this::run, "RyzomRedditBot-log");
+        writer.setDaemon(true);
+    }
+
+    /**
+     * Opens the log file for appending and starts the writer thread.
+     *
+     * @param fileName   Log file
+     * @param limitBytes Size after which the log file is rotated
+     * @param count      Number of rotated log files to keep
+     * @param capacity   Number of records the queue holds
+     * @param console    Stream every record is also written to, or null
+     * @return The started handler
+     * @throws IOException if the log file could not be opened
+     */
+    public static AsyncLogHandler open(String fileName, long limitBytes, int count, int capacity, PrintStream console)
+            throws IOException {
+        AsyncLogHandler handler = new AsyncLogHandler(fileName, limitBytes, count, capacity, console);
+        // Started only once the handler is fully constructed
+        handler.writer.start();
+        return handler;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        if (!queue.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Does nothing, the writer flushes after every batch.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Writes all queued records and closes the log file.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (queue.offer(STOP, CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                writer.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<LogRecord> batch = new ArrayList<>(BATCH_SIZE);
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                // Only close() stops the writer, so no record is lost
+                continue;
+            }
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            stopped = write(batch);
+            batch.clear();
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            reportError("Failed to close " + file, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    /**
+     * Formats and writes a batch of records.
+     *
+     * @return true if the batch ended with the stop marker
+     */
+    private boolean write(List<LogRecord> batch) {
+        long droppedRecords = dropped.getAndSet(0);
+        if (droppedRecords > 0) {
+            LogRecord warning = new LogRecord(Level.WARNING, droppedRecords + " log record(s) dropped, the log queue was full.");
+            format(warning);
+        }
+
+        for (LogRecord record : batch) {
+            if (record == STOP) {
+                writeText();
+                return true;
+            }
+            if (size + text.length() >= limitBytes || record.getMillis() >= nextRotationMillis) {
+                writeText();
+                rotate(record.getMillis());
+            }
+            format(record);
+        }
+        writeText();
+        return false;
+    }
+
+    private void format(LogRecord record) {
+        try {
+            Formatter formatter = getFormatter();
+            if (formatter instanceof ShortLogFormatter shortFormatter) {
+                shortFormatter.formatTo(record, text);
+            } else {
+                text.append(formatter.format(record));
+            }
+        } catch (RuntimeException e) {
+            reportError("Failed to format log record", e, ErrorManager.FORMAT_FAILURE);
+        }
+    }
+
+    /**
+     * Encodes the formatted text and writes it to the log file and the console.
+     */
+    private void writeText() {
+        if (text.isEmpty()) {
+            return;
+        }
+
+        // Sized for the worst case, so the text is encoded in one pass
+        int maxBytes = (int) Math.ceil(text.length() * (double) encoder.maxBytesPerChar());
+        if (bytes.capacity() < maxBytes) {
+            bytes = ByteBuffer.allocate(Math.max(maxBytes, bytes.capacity() * 2));
+        }
+        bytes.clear();
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(text), bytes, true);
+        encoder.flush(bytes);
+        bytes.flip();
+        text.setLength(0);
+
+        if (console != null) {
+            console.write(bytes.array(), 0, bytes.limit());
+            console.flush();
+        }
+        try {
+            while (bytes.hasRemaining()) {
+                size += channel.write(bytes);
+            }
+        } catch (IOException e) {
+            reportError("Failed to write " + file, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    /**
+     * Moves the log file to {@code <file>.1}, shifting the older ones, and starts a new one.
+     */
+    private void rotate(long millis) {
+        try {
+            channel.close();
+            Files.deleteIfExists(rotatedFile(count));
+            for (int i = count - 1; i >= 1; i--) {
+                if (Files.exists(rotatedFile(i))) {
+                    Files.move(rotatedFile(i), rotatedFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            if (count > 0) {
+                Files.move(file, rotatedFile(1), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            reportError("Failed to rotate " + file, e, ErrorManager.GENERIC_FAILURE);
+        }
+
+        try {
+            openFile(millis);
+        } catch (IOException e) {
+            reportError("Failed to open " + file, e, ErrorManager.OPEN_FAILURE);
+        }
+    }
+
+    private void openFile(long millis) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+
+        // Next local midnight
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(millis), zone);
+        nextRotationMillis = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private Path rotatedFile(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
@@ -0,0 +1,270 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.NewsItem;
+import okhttp3.HttpUrl;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Posts the archive of a feed, oldest news first, to seed a new subreddit with its history.
+ * <p>
+ * The archive pages are crawled until one adds no news, then the detail page of every news not posted yet is fetched,
+ * several at a time. Detail pages may arrive in any order, so they wait in a bounded reorder buffer until all older
+ * news were committed; the posts thus keep the chronological order while the next pages are already being fetched.
+ * <p>
+ * After every committed batch, the URL of its newest news is written to a checkpoint file. A later run stops crawling
+ * at the page holding that news and continues right after it, so an interrupted backfill resumes where it stopped.
+ */
+final class Backfill {
+    private static final String KEY_COMMITTED = "committed";
+
+    // Detail pages fetched ahead of the oldest news not committed yet, per parallel fetch
+    private static final int WINDOW_PER_FETCH = 4;
+
+    private static final Logger logger = Logger.getLogger(Backfill.class.getName());
+
+    /**
+     * Fetches and parses a page.
+     */
+    interface PageFetcher {
+        Document fetch(String url) throws IOException;
+    }
+
+    private final Config.Feed feed;
+    private final PageFetcher fetcher;
+    private final String pageParameter;
+    private final int maxPages;
+    private final int parallel;
+    private final Path checkpointFile;
+    private final Semaphore fetches;
+
+    /**
+     * @param feed           Feed to backfill
+     * @param fetcher        Fetches the archive and detail pages
+     * @param pageParameter  Query parameter selecting an archive page, the first page is the feed URL itself
+     * @param maxPages       Number of archive pages crawled at most
+     * @param parallel       Number of pages fetched at the same time
+     * @param checkpointFile File recording the newest committed news
+     */
+    Backfill(Config.Feed feed, PageFetcher fetcher, String pageParameter, int maxPages, int parallel,
+             Path checkpointFile) {
+        this.feed = feed;
+        this.fetcher = fetcher;
+        this.pageParameter = pageParameter;
+        this.maxPages = maxPages;
+        this.parallel = parallel;
+        this.checkpointFile = checkpointFile;
+        this.fetches = new Semaphore(parallel);
+    }
+
+    /**
+     * Crawls the archive and commits all news newer than the checkpoint that are not posted yet, oldest first.
+     *
+     * @param isPosted Predicate matching the URL of a news posted to all subreddits of the feed, which is skipped
+     * @param commit   Posts a batch of news, oldest first, and returns true if all of them were posted
+     * @return true if the backfill is complete, false if a commit failed and the backfill stopped
+     * @throws IOException          if a page could not be fetched
+     * @throws InterruptedException if interrupted while waiting for a page
+     */
+    boolean run(Predicate<String> isPosted, Predicate<List<NewsItem>> commit) throws IOException, InterruptedException {
+        String committed = loadCheckpoint();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<NewsItem> listed = crawlArchive(executor, committed);
+
+            // The archive lists the newest news first
+            Collections.reverse(listed);
+            List<NewsItem> pending = listed.stream().filter(news -> !isPosted.test(news.url)).toList();
+            logger.info("Backfilling " + pending.size() + " of " + listed.size() + " archived news of feed '" +
+                    feed.name() + "'" + (committed != null ? " after " + committed : "") + ".");
+            return commitInOrder(executor, pending, commit);
+        }
+    }
+
+    /**
+     * Fetches the archive pages, a batch of them at a time, until a page adds no news, holds the checkpoint news or
+     * the page limit is reached.
+     *
+     * @return The news newer than the checkpoint, newest first
+     */
+    private List<NewsItem> crawlArchive(ExecutorService executor, String committed)
+            throws IOException, InterruptedException {
+        List<NewsItem> listed = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+
+        for (int first = 1; first <= maxPages; first += parallel) {
+            List<Future<Document>> pages = new ArrayList<>();
+            for (int page = first; page < first + parallel && page <= maxPages; page++) {
+                String url = pageUrl(page);
+                pages.add(executor.submit(() -> fetch(url)));
+            }
+
+            for (int i = 0; i < pages.size(); i++) {
+                boolean added = false;
+                for (NewsItem news : RyzomRedditBot.fetchNewsFromHtml(get(pages.get(i)), null)) {
+                    if (news.url.equals(committed)) {
+                        logger.info("Reached the checkpoint on archive page " + (first + i) + ".");
+                        cancel(pages);
+                        return listed;
+                    }
+                    if (seen.add(news.url)) {
+                        listed.add(news);
+                        added = true;
+                    }
+                }
+
+                // Past the last page, or the site ignores the page parameter and repeats a page
+                if (!added) {
+                    cancel(pages);
+                    return listed;
+                }
+            }
+        }
+        logger.warning("Stopped crawling the archive of feed '" + feed.name() + "' at the limit of " + maxPages +
+                " pages.");
+        return listed;
+    }
+
+    /**
+     * Fetches the detail pages in a sliding window and commits the news in the given order. Whenever the oldest news
+     * is ready, it is committed together with all younger ones that are ready already.
+     */
+    private boolean commitInOrder(ExecutorService executor, List<NewsItem> pending, Predicate<List<NewsItem>> commit)
+            throws IOException, InterruptedException {
+        ArrayDeque<Future<NewsItem>> window = new ArrayDeque<>();
+        Iterator<NewsItem> remaining = pending.iterator();
+        try {
+            fill(executor, window, remaining);
+            while (!window.isEmpty()) {
+                List<NewsItem> batch = new ArrayList<>();
+                batch.add(get(window.remove()));
+                while (!window.isEmpty() && window.peek().isDone()) {
+                    batch.add(get(window.remove()));
+                }
+
+                // Keep fetching while the batch is posted
+                fill(executor, window, remaining);
+                if (!commit.test(batch)) {
+                    logger.warning("Stopped the backfill of feed '" + feed.name() + "', it resumes with " +
+                            batch.getFirst().url);
+                    return false;
+                }
+                saveCheckpoint(batch.getLast().url);
+            }
+            return true;
+        } finally {
+            cancel(window);
+        }
+    }
+
+    private void fill(ExecutorService executor, ArrayDeque<Future<NewsItem>> window, Iterator<NewsItem> remaining) {
+        while (remaining.hasNext() && window.size() < parallel * WINDOW_PER_FETCH) {
+            NewsItem listing = remaining.next();
+            window.add(executor.submit(() -> detail(listing)));
+        }
+    }
+
+    /**
+     * Fetches the detail page of a news. The listed news is kept if the detail page does not contain it.
+     */
+    private NewsItem detail(NewsItem listing) throws IOException, InterruptedException {
+        List<NewsItem> found = RyzomRedditBot.fetchNewsFromHtml(fetch(listing.url), null);
+        for (NewsItem news : found) {
+            if (news.url.equals(listing.url)) {
+                return news;
+            }
+        }
+        if (found.size() == 1) {
+            return found.getFirst();
+        }
+        logger.warning("Detail page does not contain the news, using the archive page: " + listing.url);
+        return listing;
+    }
+
+    private Document fetch(String url) throws IOException, InterruptedException {
+        fetches.acquire();
+        Metrics.Sample fetchSample = Metrics.start(Metrics.Stage.FETCH);
+        try {
+            return fetcher.fetch(url);
+        } finally {
+            fetchSample.stop();
+            fetches.release();
+        }
+    }
+
+    private String pageUrl(int page) {
+        if (page == 1) {
+            return feed.url();
+        }
+        return HttpUrl.get(feed.url()).newBuilder()
+                .setQueryParameter(pageParameter, Integer.toString(page))
+                .toString();
+    }
+
+    private String loadCheckpoint() throws IOException {
+        Properties props = new Properties();
+        try (Reader in = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+            props.load(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        return props.getProperty(KEY_COMMITTED);
+    }
+
+    private void saveCheckpoint(String url) {
+        Properties props = new Properties();
+        props.setProperty(KEY_COMMITTED, url);
+
+        // Written aside first, so a crash never leaves a truncated checkpoint
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                props.store(out, "Newest news committed by the backfill of feed '" + feed.name() + "'");
+            }
+            Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The posted news store still prevents duplicates, only the crawl takes longer on resume
+            logger.log(Level.SEVERE, "Failed to save backfill checkpoint: " + checkpointFile, e);
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void cancel(Iterable<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+}
@@ -1,26 +1,142 @@
 package de.InVinoVeritas;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 public class Config {
+    // Configuration file in the working directory
+    public static final String CONFIG_FILE = "config.properties";
+
+    // Release notes page used when no feeds are configured
+    public static final String DEFAULT_FEED_URL = "https://app.ryzom.com/app_releasenotes/index.php?lang=en&ig=1";
+
+    // Flair used when a feed does not define one
+    public static final String DEFAULT_FLAIR = "Release Note";
+
+    /**
+     * A release notes page and the subreddits its news are posted to.
+     *
+     * @param name       Name of the feed, as listed in {@code feeds}
+     * @param url        URL of the release notes page
+     * @param subreddits Target subreddit names
+     * @param flair      Flair text assigned to the posts
+     */
+    public record Feed(String name, String url, List<String> subreddits, String flair) {
+    }
+
     private final String redditUsername;
     private final String redditPassword;
     private final String clientId;
     private final String clientSecret;
     private final String subreddit;
+    private final boolean incrementalParsing;
+    private final boolean daemon;
+    private final int pollInterval;
+    private final List<Feed> feeds;
+    private final int maxFetchesPerHost;
+    private final int maxAttempts;
+    private final int connectTimeoutSeconds;
+    private final int readTimeoutSeconds;
+    private final int callTimeoutSeconds;
+    private final int dnsCacheSeconds;
+    private final String redditBaseUrl;
+    private final String metricsHost;
+    private final int metricsPort;
+    private final boolean coordination;
+    private final String instanceId;
+    private final int shards;
+    private final boolean editDetection;
+    private final int editDepth;
+    private final boolean imagePrefetch;
+    private final String imageCacheDir;
+    private final int imageCacheMaxMegabytes;
+    private final int maxParallelImages;
+    private final String backfillPageParameter;
+    private final int backfillMaxPages;
+    private final int backfillParallel;
+    private final String discordWebhook;
+    private final String mastodonUrl;
+    private final String mastodonToken;
+    private final String feedFile;
+    private final String feedTitle;
+    private final int feedEntries;
+    private final int sinkTimeoutSeconds;
+    private final int sinkMaxAttempts;
+    private final int sinkQueue;
+    private final boolean duplicateGuard;
+    private final int duplicateCacheSeconds;
+    private final int duplicatePages;
 
     public Config() {
+        this(Path.of(CONFIG_FILE));
+    }
+
+    /**
+     * Loads and validates a configuration file. The configuration never changes afterward, a changed file is loaded
+     * into a new instance.
+     *
+     * @param file Configuration file
+     * @throws RuntimeException if the file could not be read or a property is missing or invalid
+     */
+    public Config(Path file) {
         Properties props = new Properties();
-        try (InputStream in = new FileInputStream("config.properties")) {
+        try (InputStream in = Files.newInputStream(file)) {
             props.load(in);
             this.redditUsername = getPropertyOrThrow(props, "reddit.username");
             this.redditPassword = getPropertyOrThrow(props, "reddit.password");
             this.clientId = getPropertyOrThrow(props, "reddit.client.id");
             this.clientSecret = getPropertyOrThrow(props, "reddit.client.secret");
-            this.subreddit = getPropertyOrThrow(props, "reddit.subreddit");
+            this.subreddit = props.getProperty("feeds") == null
+                    ? getPropertyOrThrow(props, "reddit.subreddit")
+                    : props.getProperty("reddit.subreddit", "").trim();
+            this.incrementalParsing = Boolean.parseBoolean(props.getProperty("bot.incremental", "true").trim());
+            this.daemon = Boolean.parseBoolean(props.getProperty("bot.daemon", "false").trim());
+            this.pollInterval = getPositiveIntProperty(props, "bot.poll.interval", 300);
+            this.feeds = loadFeeds(props);
+            this.maxFetchesPerHost = getPositiveIntProperty(props, "fetch.max.per.host", 2);
+            this.maxAttempts = getPositiveIntProperty(props, "reddit.max.attempts", 5);
+            this.connectTimeoutSeconds = getPositiveIntProperty(props, "http.connect.timeout", 10);
+            this.readTimeoutSeconds = getPositiveIntProperty(props, "http.read.timeout", 30);
+            this.callTimeoutSeconds = getPositiveIntProperty(props, "http.call.timeout", 120);
+            this.dnsCacheSeconds = getPositiveIntProperty(props, "http.dns.cache", 300);
+            this.redditBaseUrl = getUrlProperty(props, "reddit.base.url");
+            this.metricsHost = props.getProperty("metrics.host", "").trim();
+            this.metricsPort = getNonNegativeIntProperty(props, "metrics.port", 0);
+            this.coordination = Boolean.parseBoolean(props.getProperty("coordination.enabled", "false").trim());
+            this.instanceId = props.getProperty("coordination.instance.id", defaultInstanceId()).trim();
+            this.shards = getPositiveIntProperty(props, "coordination.shards", 1);
+            this.editDetection = Boolean.parseBoolean(props.getProperty("bot.edits", "true").trim());
+            this.editDepth = getPositiveIntProperty(props, "bot.edit.depth", 10);
+            this.imagePrefetch = Boolean.parseBoolean(props.getProperty("images.prefetch", "false").trim());
+            this.imageCacheDir = props.getProperty("images.cache.dir", "image_cache").trim();
+            this.imageCacheMaxMegabytes = getPositiveIntProperty(props, "images.cache.max.mb", 100);
+            this.maxParallelImages = getPositiveIntProperty(props, "images.max.parallel", 4);
+            this.backfillPageParameter = props.getProperty("backfill.page.parameter", "page").trim();
+            this.backfillMaxPages = getPositiveIntProperty(props, "backfill.max.pages", 100);
+            this.backfillParallel = getPositiveIntProperty(props, "backfill.parallel", 4);
+            this.discordWebhook = getUrlProperty(props, "sinks.discord.webhook");
+            this.mastodonUrl = getUrlProperty(props, "sinks.mastodon.url");
+            this.mastodonToken = props.getProperty("sinks.mastodon.token", "").trim();
+            if (!mastodonUrl.isEmpty() && mastodonToken.isEmpty()) {
+                throw new RuntimeException("Missing property: sinks.mastodon.token");
+            }
+            this.feedFile = props.getProperty("sinks.feed.file", "").trim();
+            this.feedTitle = props.getProperty("sinks.feed.title", "Ryzom Release Notes").trim();
+            this.feedEntries = getPositiveIntProperty(props, "sinks.feed.entries", 50);
+            this.sinkTimeoutSeconds = getPositiveIntProperty(props, "sinks.timeout", 10);
+            this.sinkMaxAttempts = getPositiveIntProperty(props, "sinks.max.attempts", 3);
+            this.sinkQueue = getPositiveIntProperty(props, "sinks.queue", 100);
+            this.duplicateGuard = Boolean.parseBoolean(props.getProperty("reddit.duplicate.guard", "true").trim());
+            this.duplicateCacheSeconds = getPositiveIntProperty(props, "reddit.duplicate.cache", 600);
+            this.duplicatePages = getPositiveIntProperty(props, "reddit.duplicate.pages", 10);
         } catch (IOException e) {
             throw new RuntimeException("Failed to load configuration: " + e.getMessage(), e);
         }
@@ -34,6 +150,109 @@ public class Config {
         return value.trim();
     }
 
+    private List<Feed> loadFeeds(Properties props) {
+        String names = props.getProperty("feeds");
+        if (names == null) {
+            // Single feed from the original configuration
+            return List.of(new Feed("default", DEFAULT_FEED_URL, List.of(subreddit), DEFAULT_FLAIR));
+        }
+
+        List<Feed> feedList = new ArrayList<>();
+        for (String name : splitList(names)) {
+            String prefix = "feed." + name + ".";
+            feedList.add(new Feed(
+                    name,
+                    getPropertyOrThrow(props, prefix + "url"),
+                    splitList(getPropertyOrThrow(props, prefix + "subreddits")),
+                    props.getProperty(prefix + "flair", DEFAULT_FLAIR).trim()
+            ));
+        }
+        if (feedList.isEmpty()) {
+            throw new RuntimeException("Missing property: feeds");
+        }
+        return List.copyOf(feedList);
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    private static List<String> splitList(String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .toList();
+    }
+
+    private int getPositiveIntProperty(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value.trim());
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new RuntimeException("Invalid property: " + key + " must be a positive number");
+    }
+
+    private int getNonNegativeIntProperty(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value.trim());
+            if (number >= 0) {
+                return number;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new RuntimeException("Invalid property: " + key + " must be zero or a positive number");
+    }
+
+    private String getUrlProperty(Properties props, String key) {
+        String value = props.getProperty(key, "").trim();
+        if (!value.isEmpty() && !value.startsWith("http://") && !value.startsWith("https://")) {
+            throw new RuntimeException("Invalid property: " + key + " must be an http or https URL");
+        }
+        return value;
+    }
+
+    /**
+     * Returns the settings that are only applied at startup, so a reload can tell when a restart is needed.
+     *
+     * @return Values of the startup settings
+     */
+    public List<Object> getStartupSettings() {
+        return List.of(maxFetchesPerHost, maxAttempts, connectTimeoutSeconds, readTimeoutSeconds, callTimeoutSeconds,
+                dnsCacheSeconds, metricsHost, metricsPort, coordination, instanceId, shards, imagePrefetch, imageCacheDir,
+                imageCacheMaxMegabytes, maxParallelImages, discordWebhook, mastodonUrl, mastodonToken, feedFile,
+                feedTitle, feedEntries, sinkTimeoutSeconds, sinkMaxAttempts, sinkQueue, duplicateGuard,
+                duplicateCacheSeconds, duplicatePages);
+    }
+
+    /**
+     * Checks whether another configuration logs in to Reddit the same way, so its Reddit client can be kept.
+     *
+     * @param other Configuration to compare with
+     * @return true if the credentials and the API server are the same
+     */
+    public boolean hasSameRedditLogin(Config other) {
+        return redditUsername.equals(other.redditUsername) && redditPassword.equals(other.redditPassword)
+                && clientId.equals(other.clientId) && clientSecret.equals(other.clientSecret)
+                && redditBaseUrl.equals(other.redditBaseUrl);
+    }
+
     public String getRedditUsername() {
         return redditUsername;
     }
@@ -53,4 +272,152 @@ public class Config {
     public String getSubreddit() {
         return subreddit;
     }
-}
\ No newline at end of file
+
+    public boolean isIncrementalParsing() {
+        return incrementalParsing;
+    }
+
+    public boolean isDaemon() {
+        return daemon;
+    }
+
+    public int getPollInterval() {
+        return pollInterval;
+    }
+
+    public List<Feed> getFeeds() {
+        return feeds;
+    }
+
+    public int getMaxFetchesPerHost() {
+        return maxFetchesPerHost;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public int getConnectTimeoutSeconds() {
+        return connectTimeoutSeconds;
+    }
+
+    public int getReadTimeoutSeconds() {
+        return readTimeoutSeconds;
+    }
+
+    public int getCallTimeoutSeconds() {
+        return callTimeoutSeconds;
+    }
+
+    public int getDnsCacheSeconds() {
+        return dnsCacheSeconds;
+    }
+
+    public String getRedditBaseUrl() {
+        return redditBaseUrl;
+    }
+
+    public String getMetricsHost() {
+        return metricsHost;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public boolean isCoordination() {
+        return coordination;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public boolean isEditDetection() {
+        return editDetection;
+    }
+
+    public int getEditDepth() {
+        return editDepth;
+    }
+
+    public boolean isImagePrefetch() {
+        return imagePrefetch;
+    }
+
+    public String getImageCacheDir() {
+        return imageCacheDir;
+    }
+
+    public int getImageCacheMaxMegabytes() {
+        return imageCacheMaxMegabytes;
+    }
+
+    public int getMaxParallelImages() {
+        return maxParallelImages;
+    }
+
+    public String getBackfillPageParameter() {
+        return backfillPageParameter;
+    }
+
+    public int getBackfillMaxPages() {
+        return backfillMaxPages;
+    }
+
+    public int getBackfillParallel() {
+        return backfillParallel;
+    }
+
+    public String getDiscordWebhook() {
+        return discordWebhook;
+    }
+
+    public String getMastodonUrl() {
+        return mastodonUrl;
+    }
+
+    public String getMastodonToken() {
+        return mastodonToken;
+    }
+
+    public String getFeedFile() {
+        return feedFile;
+    }
+
+    public String getFeedTitle() {
+        return feedTitle;
+    }
+
+    public int getFeedEntries() {
+        return feedEntries;
+    }
+
+    public int getSinkTimeoutSeconds() {
+        return sinkTimeoutSeconds;
+    }
+
+    public int getSinkMaxAttempts() {
+        return sinkMaxAttempts;
+    }
+
+    public int getSinkQueue() {
+        return sinkQueue;
+    }
+
+    public boolean isDuplicateGuard() {
+        return duplicateGuard;
+    }
+
+    public int getDuplicateCacheSeconds() {
+        return duplicateCacheSeconds;
+    }
+
+    public int getDuplicatePages() {
+        return duplicatePages;
+    }
+}
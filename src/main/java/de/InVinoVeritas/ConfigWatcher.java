@@ -0,0 +1,136 @@
+package de.InVinoVeritas;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reloads the configuration whenever its file changes, without restarting the bot.
+ * <p>
+ * A changed file is loaded and validated on the watcher thread. Only a valid configuration replaces the current one, in
+ * a single atomic swap, so a poll that already started keeps the configuration it started with and the next poll uses
+ * the new one. An invalid file is logged and ignored until it changes again.
+ */
+final class ConfigWatcher implements Closeable {
+    // Time to wait for further events, as editors often write a file in several steps
+    private static final long SETTLE_MILLIS = 200;
+
+    private static final Logger logger = Logger.getLogger(ConfigWatcher.class.getName());
+
+    private final Path file;
+    private final AtomicReference<Config> current;
+    private final WatchService watchService;
+
+    // Digest of the file content the current configuration was loaded from
+    private String digest;
+
+    /**
+     * Starts watching the directory of the configuration file.
+     *
+     * @param file     Configuration file
+     * @param initial  Configuration loaded from the file at startup
+     * @param onReload Called on the watcher thread with the previous and the new configuration after each reload
+     * @throws IOException if the directory could not be watched
+     */
+    ConfigWatcher(Path file, Config initial, BiConsumer<Config, Config> onReload) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.current = new AtomicReference<>(initial);
+        this.digest = digest();
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        // Editors that save through a temporary file replace the file, so creations are watched as well
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread thread = new Thread(() -> watch(onReload), "RyzomRedditBot-config");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the current configuration. Callers keep the returned snapshot for a whole poll.
+     *
+     * @return Current configuration
+     */
+    Config current() {
+        return current.get();
+    }
+
+    /**
+     * Stops watching the configuration file.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void watch(BiConsumer<Config, Config> onReload) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = isConfigEvent(key);
+
+                // Collect the events of the same save
+                WatchKey next;
+                while ((next = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= isConfigEvent(next);
+                }
+                if (changed) {
+                    reload(onReload);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    private boolean isConfigEvent(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // An overflow may have dropped the event of the file
+            changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context());
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reload(BiConsumer<Config, Config> onReload) {
+        String newDigest = digest();
+        if (newDigest == null || newDigest.equals(digest)) {
+            // Removed, or touched without changing
+            return;
+        }
+
+        Config loaded;
+        try {
+            loaded = new Config(file);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Ignoring invalid configuration, keeping the current one: " + e.getMessage());
+            return;
+        }
+        digest = newDigest;
+        Config previous = current.getAndSet(loaded);
+        logger.info("Reloaded configuration from " + file + ".");
+        onReload.accept(previous, loaded);
+    }
+
+    private String digest() {
+        try {
+            return PageCache.digest(Files.readAllBytes(file));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package de.InVinoVeritas;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Coordinates bot instances sharing a state directory, so no news is posted twice.
+ * <p>
+ * The feeds are split into shards, and an instance only polls the feeds of the shards it holds a lease on. A lease is
+ * an exclusive {@link FileChannel#tryLock() lock} on the lock file of its shard, which the operating system releases
+ * when the instance dies, so another instance takes the shard over with its next poll. Every acquisition increments a
+ * fencing token stored in the lock file; an instance checks its token before every post and stops posting if the
+ * lease was lost or taken over in the meantime.
+ * <p>
+ * Live instances announce themselves with a heartbeat file holding their number of leases. An instance holding more
+ * than its fair share gives one lease up when another live instance holds less than its share, so the shards spread
+ * over all instances. Free leases are taken at once, regardless of the share, so a failover never waits for the
+ * heartbeat of the dead instance to expire.
+ * <p>
+ * The posted news store is shared by all shards. It is only written while holding the store lock, see
+ * {@link #withStoreLock(StoreAction)}.
+ */
+public class Coordinator implements Closeable {
+    private static final String LOCK_DIR = "leases";
+    private static final String HEARTBEAT_DIR = "instances";
+    private static final String STORE_LOCK_FILE = "posted_news.lock";
+
+    private static final Logger logger = Logger.getLogger(Coordinator.class.getName());
+
+    private final Path dir;
+    private final String instanceId;
+    private final int shards;
+    private final long heartbeatTimeoutMillis;
+    private final Map<Integer, Lease> leases = new HashMap<>();
+
+    // Shards given up in the last refresh, left to the other instances for one round
+    private Set<Integer> released = Set.of();
+
+    /**
+     * An action on the posted news store, run while holding the store lock.
+     *
+     * @param <T> Result of the action
+     */
+    @FunctionalInterface
+    public interface StoreAction<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * A held shard lease.
+     *
+     * @param channel Open lock file
+     * @param lock    Lock on the whole lock file
+     * @param token   Fencing token written when the lease was acquired
+     */
+    private record Lease(FileChannel channel, FileLock lock, long token) {
+    }
+
+    /**
+     * @param dir                 Shared state directory
+     * @param instanceId          Name of this instance, unique among the instances sharing the directory
+     * @param shards              Number of shards the feeds are split into
+     * @param pollIntervalSeconds Poll interval, an instance without heartbeat for two intervals is considered dead
+     * @throws IOException if the coordination directories could not be created
+     */
+    public Coordinator(Path dir, String instanceId, int shards, int pollIntervalSeconds) throws IOException {
+        this.dir = dir;
+        this.instanceId = instanceId;
+        this.shards = shards;
+        this.heartbeatTimeoutMillis = 2_000L * pollIntervalSeconds;
+        Files.createDirectories(dir.resolve(LOCK_DIR));
+        Files.createDirectories(dir.resolve(HEARTBEAT_DIR));
+    }
+
+    /**
+     * Returns the shard of a feed. All instances agree on it as long as they use the same number of shards.
+     *
+     * @param feed Feed to look up
+     * @return Shard index
+     */
+    public int shardOf(Config.Feed feed) {
+        return Math.floorMod(feed.name().hashCode(), shards);
+    }
+
+    /**
+     * Sends a heartbeat, gives up a lease if the shards are unevenly spread and takes all free leases. Meant to be
+     * called at the start of every poll.
+     *
+     * @return Shards this instance holds a lease on
+     */
+    public synchronized Set<Integer> refresh() {
+        // Drop leases that were lost, e.g. when a network file system broke the lock
+        leases.entrySet().removeIf(entry -> {
+            if (isHeld(entry.getKey())) {
+                return false;
+            }
+            logger.warning("Lost the lease on shard " + entry.getKey() + ".");
+            closeQuietly(entry.getValue());
+            return true;
+        });
+
+        Map<String, Integer> live = readHeartbeats();
+        live.put(instanceId, leases.size());
+        int share = (shards + live.size() - 1) / live.size();
+        boolean underloaded = live.entrySet().stream()
+                .anyMatch(entry -> !entry.getKey().equals(instanceId) && entry.getValue() < share);
+
+        Set<Integer> releasedNow = new TreeSet<>();
+        if (leases.size() > share && underloaded) {
+            int shard = leases.keySet().stream().max(Integer::compare).orElseThrow();
+            closeQuietly(leases.remove(shard));
+            releasedNow.add(shard);
+            logger.info("Gave up the lease on shard " + shard + " to balance " + shards + " shard(s) over " +
+                    live.size() + " instance(s).");
+        }
+
+        // Start at an instance-specific shard, so instances starting together tend to take different shards
+        int first = Math.floorMod(instanceId.hashCode(), shards);
+        for (int i = 0; i < shards; i++) {
+            int shard = (first + i) % shards;
+            if (!leases.containsKey(shard) && !releasedNow.contains(shard) && !released.contains(shard)) {
+                tryAcquire(shard);
+            }
+        }
+        released = releasedNow;
+
+        writeHeartbeat();
+        return Set.copyOf(leases.keySet());
+    }
+
+    /**
+     * Checks the fencing token of a shard, to be called right before posting news of it.
+     *
+     * @param shard Shard index
+     * @return true if this instance still holds the lease and no other instance took it over
+     */
+    public synchronized boolean isHeld(int shard) {
+        Lease lease = leases.get(shard);
+        if (lease == null || !lease.lock().isValid()) {
+            return false;
+        }
+        try {
+            return readToken(lease.channel()) == lease.token();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read the fencing token of shard " + shard, e);
+            return false;
+        }
+    }
+
+    /**
+     * Waits for the exclusive lock on the posted news store and runs an action while holding it. The action must
+     * reopen the store first, as another instance may have changed or rebuilt it, and flush its changes before it
+     * returns.
+     *
+     * @param action Action on the store
+     * @param <T>    Result of the action
+     * @return The result of the action
+     * @throws IOException if the lock file could not be locked, or the action failed
+     */
+    public <T> T withStoreLock(StoreAction<T> action) throws IOException {
+        // Closing the channel releases the lock
+        try (FileChannel channel = FileChannel.open(dir.resolve(STORE_LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.lock();
+            return action.run();
+        }
+    }
+
+    /**
+     * Releases all leases and removes the heartbeat, so other instances take over at once.
+     */
+    @Override
+    public synchronized void close() {
+        for (Lease lease : leases.values()) {
+            closeQuietly(lease);
+        }
+        leases.clear();
+        try {
+            Files.deleteIfExists(heartbeatFile());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to remove heartbeat " + heartbeatFile(), e);
+        }
+    }
+
+    private void tryAcquire(int shard) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(dir.resolve(LOCK_DIR).resolve("shard-" + shard + ".lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // Held by another instance in this JVM
+                lock = null;
+            }
+            if (lock == null) {
+                channel.close();
+                return;
+            }
+
+            long token = readToken(channel) + 1;
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, token), 0);
+            channel.force(true);
+            leases.put(shard, new Lease(channel, lock, token));
+            logger.info("Acquired the lease on shard " + shard + " with fencing token " + token + ".");
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to acquire the lease on shard " + shard, e);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static long readToken(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // Read until the token is complete or the file ends
+        }
+        return buffer.hasRemaining() ? 0 : buffer.getLong(0);
+    }
+
+    /**
+     * Returns the number of leases of every other instance with a recent heartbeat.
+     */
+    private Map<String, Integer> readHeartbeats() {
+        Map<String, Integer> live = new HashMap<>();
+        long oldest = System.currentTimeMillis() - heartbeatTimeoutMillis;
+        List<Path> files;
+        try (Stream<Path> heartbeats = Files.list(dir.resolve(HEARTBEAT_DIR))) {
+            files = heartbeats.toList();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read heartbeats", e);
+            return live;
+        }
+
+        for (Path file : files) {
+            try {
+                if (Files.getLastModifiedTime(file).toMillis() >= oldest) {
+                    live.put(file.getFileName().toString(), Integer.parseInt(Files.readString(file).trim()));
+                }
+            } catch (IOException | NumberFormatException e) {
+                // Removed or being written, the instance counts again with its next heartbeat
+            }
+        }
+        return live;
+    }
+
+    private void writeHeartbeat() {
+        try {
+            Files.writeString(heartbeatFile(), Integer.toString(leases.size()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write heartbeat " + heartbeatFile(), e);
+        }
+    }
+
+    private Path heartbeatFile() {
+        return dir.resolve(HEARTBEAT_DIR).resolve(instanceId);
+    }
+
+    private static void closeQuietly(Lease lease) {
+        try {
+            // Closing the channel releases the lock
+            lease.channel().close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to release a lease", e);
+        }
+    }
+}
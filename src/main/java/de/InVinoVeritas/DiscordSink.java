@@ -0,0 +1,81 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.RenderedNews;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+
+/**
+ * Posts news to a Discord channel through a webhook, as an embed linking the release note.
+ * <p>
+ * A webhook call cannot be made idempotent, so it is only retried if it provably did not post the message: the
+ * connection failed, or Discord answered with an error like HTTP 429 or 5xx. A call cut off after it was sent, e.g. by
+ * a read or call timeout, counts as delivered, as the message may be in the channel already.
+ */
+final class DiscordSink implements Sink {
+    // Discord's embed limits, in characters
+    private static final int MAX_TITLE_LENGTH = 256;
+    private static final int MAX_DESCRIPTION_LENGTH = 4096;
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private final HttpUrl webhook;
+    private final OkHttpClient httpClient;
+
+    /**
+     * @param webhook    URL of the webhook
+     * @param httpClient Client with the timeouts of this sink
+     */
+    DiscordSink(String webhook, OkHttpClient httpClient) {
+        // Waiting for the message makes Discord report a rejected one instead of accepting it silently
+        this.webhook = HttpUrl.get(webhook).newBuilder().setQueryParameter("wait", "true").build();
+        this.httpClient = httpClient;
+    }
+
+    @Override
+    public String name() {
+        return "discord";
+    }
+
+    @Override
+    public void publish(RenderedNews news) throws IOException {
+        // The first part is the whole news unless it is continued in comments on Reddit, Discord shows Markdown as well
+        StringBuilder embed = new StringBuilder(256)
+                .append("{\"title\":").append(Sink.jsonString(Sink.shorten(news.title(), MAX_TITLE_LENGTH)))
+                .append(",\"url\":").append(Sink.jsonString(news.news().url))
+                .append(",\"description\":")
+                .append(Sink.jsonString(Sink.shorten(news.markdown().getFirst(), MAX_DESCRIPTION_LENGTH)));
+        if (news.news().imageUrl != null && !news.news().imageUrl.isBlank()) {
+            embed.append(",\"image\":{\"url\":").append(Sink.jsonString(news.news().imageUrl.trim())).append('}');
+        }
+        String payload = "{\"embeds\":[" + embed.append('}') + "]}";
+
+        Request request = new Request.Builder()
+                .url(webhook)
+                .post(RequestBody.create(JSON, payload))
+                .build();
+        Response response;
+        try {
+            response = httpClient.newCall(request).execute();
+        } catch (ConnectException | UnknownHostException | NoRouteToHostException e) {
+            // Nothing was sent
+            throw e;
+        } catch (IOException e) {
+            throw new UnconfirmedException("Discord webhook call cut off after it was sent", e);
+        }
+        try (response) {
+            // A rejected message was not posted, retrying it cannot post it twice
+            if (!response.isSuccessful()) {
+                throw new IOException("Discord webhook answered HTTP " + response.code());
+            }
+        }
+    }
+}
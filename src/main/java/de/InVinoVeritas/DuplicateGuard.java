@@ -0,0 +1,223 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.NewsItem;
+import net.dean.jraw.RedditClient;
+import net.dean.jraw.models.Comment;
+import net.dean.jraw.models.PublicContribution;
+import net.dean.jraw.models.Submission;
+import net.dean.jraw.pagination.DefaultPaginator;
+import net.dean.jraw.pagination.Paginator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds news the bot account already posted to a subreddit, so a lost or outdated posted news store does not make the
+ * bot post them again.
+ * <p>
+ * The index is built from a single paginated listing of the account's recent submissions and kept for a while, so
+ * checking a news costs a map lookup instead of a search request. A post is found by any news URL its text links and
+ * by its title together with the publication date in its footer, as the bot renders them. If the listing cannot be
+ * read, no news is found until the next attempt a minute later, as the posted news store still guards against most
+ * duplicates.
+ */
+final class DuplicateGuard {
+    // Time until a failed listing is attempted again
+    private static final long RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // Link targets in Markdown and the footer the bot renders below every news
+    private static final Pattern LINK = Pattern.compile("]\\(([^)\\s]+)\\)");
+    private static final Pattern PUBLISHED = Pattern.compile("Originally published on (\\S+)");
+
+    private static final Logger logger = Logger.getLogger(DuplicateGuard.class.getName());
+
+    private final long ttlMillis;
+    private final int maxPages;
+
+    // Index of the last listing, the client it was read with and when it expires
+    private Index index;
+    private RedditClient indexedWith;
+    private long expiresAt;
+    private boolean listed;
+
+    /**
+     * @param ttlMillis Time a listing is used before it is read again
+     * @param maxPages  Listing pages of 100 submissions to read, Reddit lists at most 1000
+     */
+    DuplicateGuard(long ttlMillis, int maxPages) {
+        this.ttlMillis = ttlMillis;
+        this.maxPages = maxPages;
+    }
+
+    /**
+     * Finds an earlier post of a news in a subreddit, reading the submissions of the account first if the last listing
+     * expired or was read by another account.
+     *
+     * @param reddit    The authenticated Reddit client
+     * @param subreddit Target subreddit name
+     * @param news      The news item
+     * @return ID of the earlier submission, or null if none was found
+     */
+    synchronized String findPost(RedditClient reddit, String subreddit, NewsItem news) {
+        return findPost(reddit, subreddit, news.url, MarkdownRenderer.title(news), news.date);
+    }
+
+    /**
+     * Finds an earlier post of a news in a subreddit by the values it was posted with.
+     *
+     * @param reddit    The authenticated Reddit client
+     * @param subreddit Target subreddit name
+     * @param url       URL of the news
+     * @param title     Title of the post
+     * @param date      Publication date of the news
+     * @return ID of the earlier submission, or null if none was found
+     */
+    synchronized String findPost(RedditClient reddit, String subreddit, String url, String title, String date) {
+        if (index == null || reddit != indexedWith || System.currentTimeMillis() >= expiresAt) {
+            scan(reddit);
+        }
+        return index.find(subreddit, url, title, date);
+    }
+
+    /**
+     * Checks whether the last listing was read completely, so a news not found was really not posted.
+     *
+     * @return false if the last listing failed
+     */
+    synchronized boolean isListed() {
+        return listed;
+    }
+
+    /**
+     * Finds a comment of the account on a post among its recent comments, e.g. to tell whether a reply whose response
+     * was lost reached Reddit.
+     *
+     * @param reddit       The authenticated Reddit client
+     * @param submissionId ID of the commented submission
+     * @param body         Markdown text of the comment
+     * @param maxPages     Listing pages of 100 comments to read
+     * @return ID of the comment, or null if it is not among the recent comments
+     */
+    static String findComment(RedditClient reddit, String submissionId, String body, int maxPages) {
+        String parent = "t3_" + submissionId;
+        String text = body.strip();
+        DefaultPaginator<PublicContribution<?>> paginator = reddit.me().history("comments")
+                .limit(Paginator.RECOMMENDED_MAX_LIMIT)
+                .build();
+        for (PublicContribution<?> contribution : paginator.accumulateMerged(maxPages)) {
+            if (contribution instanceof Comment comment && parent.equals(comment.getSubmissionFullName())
+                    && Index.unescapeHtml(comment.getBody()).strip().equals(text)) {
+                return comment.getId();
+            }
+        }
+        return null;
+    }
+
+    private void scan(RedditClient reddit) {
+        Index scanned = new Index();
+        long ttl = ttlMillis;
+        listed = false;
+        try {
+            DefaultPaginator<PublicContribution<?>> paginator = reddit.me().history("submitted")
+                    .limit(Paginator.RECOMMENDED_MAX_LIMIT)
+                    .build();
+            for (PublicContribution<?> contribution : paginator.accumulateMerged(maxPages)) {
+                if (contribution instanceof Submission submission) {
+                    scanned.add(submission.getSubreddit(), submission.getId(), submission.getTitle(),
+                            submission.getSelfText(), submission.isSelfPost() ? null : submission.getUrl());
+                }
+            }
+            listed = true;
+            logger.info("Indexed " + scanned.size() + " earlier post(s) of the bot to guard against duplicates.");
+        } catch (Exception e) {
+            // JRAW is written in Kotlin and may throw checked exceptions like IOException undeclared
+            logger.warning("Failed to list earlier posts of the bot, retrying in a minute: " + e.getMessage());
+            ttl = Math.min(ttlMillis, RETRY_MILLIS);
+        }
+        index = scanned;
+        indexedWith = reddit;
+        expiresAt = System.currentTimeMillis() + ttl;
+    }
+
+    /**
+     * Posts of the account by subreddit, keyed by the fingerprints of the news URLs they link and of their titles with
+     * publication date.
+     */
+    static final class Index {
+        private final Map<String, Map<Long, String>> posts = new HashMap<>();
+        private int size;
+
+        /**
+         * Adds a submission of the account.
+         *
+         * @param subreddit Subreddit of the submission
+         * @param id        Submission ID
+         * @param title     Title as listed, possibly HTML escaped
+         * @param selfText  Markdown text as listed, possibly HTML escaped, null for a link post
+         * @param linkUrl   Target of a link post, null for a self post
+         */
+        void add(String subreddit, String id, String title, String selfText, String linkUrl) {
+            Map<Long, String> keys = posts.computeIfAbsent(subreddit.toLowerCase(Locale.ROOT), name -> new HashMap<>());
+            String text = selfText != null ? unescapeHtml(selfText) : "";
+            Matcher link = LINK.matcher(text);
+            while (link.find()) {
+                keys.put(urlKey(link.group(1)), id);
+            }
+            if (linkUrl != null) {
+                keys.put(urlKey(unescapeHtml(linkUrl)), id);
+            }
+            Matcher published = PUBLISHED.matcher(text);
+            keys.put(titleKey(unescapeHtml(title), published.find() ? published.group(1) : ""), id);
+            size++;
+        }
+
+        /**
+         * Finds a submission of a news.
+         *
+         * @param subreddit Target subreddit name
+         * @param news      The news item
+         * @return Submission ID, or null if none was found
+         */
+        String find(String subreddit, NewsItem news) {
+            return find(subreddit, news.url, MarkdownRenderer.title(news), news.date);
+        }
+
+        private String find(String subreddit, String url, String title, String date) {
+            Map<Long, String> keys = posts.get(subreddit.toLowerCase(Locale.ROOT));
+            if (keys == null) {
+                return null;
+            }
+            String id = keys.get(urlKey(url));
+            return id != null ? id : keys.get(titleKey(title, date));
+        }
+
+        int size() {
+            return size;
+        }
+
+        private static long urlKey(String url) {
+            // Undo the encoding of link targets by the renderer
+            return PostedNewsStore.fingerprint("url>" + url.strip()
+                    .replace("%20", " ").replace("%28", "(").replace("%29", ")"));
+        }
+
+        private static long titleKey(String title, String date) {
+            String normalized = title.strip();
+            if (normalized.endsWith("…")) {
+                normalized = normalized.substring(0, normalized.length() - 1);
+            }
+            normalized = normalized.replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+            return PostedNewsStore.fingerprint("title>" + normalized + ">" + date);
+        }
+
+        private static String unescapeHtml(String text) {
+            return text.replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&");
+        }
+    }
+}
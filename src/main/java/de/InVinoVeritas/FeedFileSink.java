@@ -0,0 +1,196 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.RenderedNews;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Publishes news as an Atom feed ({@code <file>.xml}) and a JSON Feed ({@code <file>.json}), newest entry first.
+ * <p>
+ * Every entry is written on a line of its own. Publishing a news renders just its entry and adds it to the entries
+ * read back from the files at startup, so the files are never rebuilt from all news. Both files are written to a
+ * temporary file first and then moved into place, so readers never see a partial feed.
+ */
+final class FeedFileSink implements Sink {
+    private static final String ATOM_ENTRY = "  <entry>";
+    private static final String JSON_ITEM = "    {";
+
+    private static final Logger logger = Logger.getLogger(FeedFileSink.class.getName());
+
+    private final Path atomFile;
+    private final Path jsonFile;
+    private final String title;
+    private final String link;
+    private final int maxEntries;
+
+    // Rendered entries of both files, newest first
+    private final Deque<String> atomEntries = new ArrayDeque<>();
+    private final Deque<String> jsonItems = new ArrayDeque<>();
+
+    /**
+     * Opens the feed files, keeping their entries. Unreadable files start a new feed.
+     *
+     * @param file       Path of the feed files without extension
+     * @param title      Title of the feed
+     * @param link       Page the feed mirrors
+     * @param maxEntries Number of newest entries to keep
+     */
+    FeedFileSink(Path file, String title, String link, int maxEntries) {
+        this.atomFile = file.resolveSibling(file.getFileName() + ".xml");
+        this.jsonFile = file.resolveSibling(file.getFileName() + ".json");
+        this.title = title;
+        this.link = link;
+        this.maxEntries = maxEntries;
+
+        List<String> atom = readEntries(atomFile, ATOM_ENTRY);
+        List<String> json = readEntries(jsonFile, JSON_ITEM);
+        if (atom.size() == json.size()) {
+            atomEntries.addAll(atom);
+            jsonItems.addAll(json);
+        } else {
+            logger.warning("Feed files " + atomFile + " and " + jsonFile + " differ, starting a new feed.");
+        }
+    }
+
+    @Override
+    public String name() {
+        return "feed";
+    }
+
+    @Override
+    public synchronized void publish(RenderedNews news) throws IOException {
+        String updated = Instant.now().truncatedTo(ChronoUnit.SECONDS).toString();
+        String published = published(news.news().date, updated);
+        String url = news.news().url;
+
+        // Changed on copies, so a failed write leaves the feed as it was for the retry. A news published before,
+        // e.g. when its delivery was not recorded, replaces its entry.
+        Deque<String> atom = new ArrayDeque<>(atomEntries);
+        Deque<String> json = new ArrayDeque<>(jsonItems);
+        String atomId = "<id>" + xml(url) + "</id>";
+        String jsonId = JSON_ITEM + "\"id\":" + Sink.jsonString(url) + ",";
+        atom.removeIf(entry -> entry.contains(atomId));
+        json.removeIf(entry -> entry.startsWith(jsonId));
+        atom.addFirst(ATOM_ENTRY + "<title>" + xml(news.title()) + "</title><link href=\"" + xml(url) +
+                "\"/><id>" + xml(url) + "</id><updated>" + published + "</updated><content type=\"text\">" +
+                xml(news.text()) + "</content></entry>");
+        StringBuilder item = new StringBuilder(JSON_ITEM)
+                .append("\"id\":").append(Sink.jsonString(url))
+                .append(",\"url\":").append(Sink.jsonString(url))
+                .append(",\"title\":").append(Sink.jsonString(news.title()))
+                .append(",\"content_text\":").append(Sink.jsonString(news.text()))
+                .append(",\"date_published\":").append(Sink.jsonString(published));
+        if (news.news().imageUrl != null && !news.news().imageUrl.isBlank()) {
+            item.append(",\"image\":").append(Sink.jsonString(news.news().imageUrl.trim()));
+        }
+        json.addFirst(item.append('}').toString());
+        while (atom.size() > maxEntries) {
+            atom.removeLast();
+            json.removeLast();
+        }
+
+        write(atomFile, "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                "<feed xmlns=\"http://www.w3.org/2005/Atom\">\n" +
+                "  <title>" + xml(title) + "</title>\n" +
+                "  <link href=\"" + xml(link) + "\"/>\n" +
+                "  <id>" + xml(link) + "</id>\n" +
+                "  <updated>" + updated + "</updated>\n", atom, "\n", "</feed>\n");
+        write(jsonFile, "{\n" +
+                "  \"version\": \"https://jsonfeed.org/version/1.1\",\n" +
+                "  \"title\": " + Sink.jsonString(title) + ",\n" +
+                "  \"home_page_url\": " + Sink.jsonString(link) + ",\n" +
+                "  \"items\": [\n", json, ",\n", "  ]\n}\n");
+        atomEntries.clear();
+        atomEntries.addAll(atom);
+        jsonItems.clear();
+        jsonItems.addAll(json);
+    }
+
+    /**
+     * Reads the entry lines of a feed file written by this sink.
+     */
+    private static List<String> readEntries(Path file, String prefix) {
+        List<String> entries = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return entries;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.startsWith(prefix)) {
+                    entries.add(line.endsWith(",") ? line.substring(0, line.length() - 1) : line);
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to read feed file " + file + ", starting a new feed: " + e.getMessage());
+            entries.clear();
+        }
+        return entries;
+    }
+
+    private static void write(Path file, String header, Deque<String> entries, String separator, String footer)
+            throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(header);
+            out.write(String.join(separator, entries));
+            out.write('\n');
+            out.write(footer);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the publication time of a news: its date, or the given time if the date is not a valid one.
+     */
+    private static String published(String date, String fallback) {
+        try {
+            return LocalDate.parse(date).atStartOfDay().toInstant(ZoneOffset.UTC).toString();
+        } catch (DateTimeParseException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Escapes text for XML content and attributes. Line breaks become character references, keeping the entry on
+     * one line.
+     */
+    private static String xml(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '&' -> sb.append("&amp;");
+                case '"' -> sb.append("&quot;");
+                case '\n' -> sb.append("&#10;");
+                case '\r' -> sb.append("&#13;");
+                default -> {
+                    // Control characters are not allowed in XML
+                    if (c >= 0x20 || c == '\t') {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
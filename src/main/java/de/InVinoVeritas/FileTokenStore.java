@@ -0,0 +1,148 @@
+package de.InVinoVeritas;
+
+import net.dean.jraw.oauth.OAuthData;
+import net.dean.jraw.oauth.TokenStore;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the Reddit access tokens in a properties file readable by the owner only, so a run can reuse the token of an
+ * earlier run instead of logging in again.
+ * <p>
+ * JRAW stores every token it receives, at login and at every renewal, through the {@link TokenStore} of the client.
+ * Each change is written to a temporary file first and then moved over the store, so a crash never leaves a truncated
+ * store behind.
+ */
+public class FileTokenStore implements TokenStore {
+    private static final String KEY_ACCESS_TOKEN = ".access_token";
+    private static final String KEY_SCOPES = ".scopes";
+    private static final String KEY_EXPIRATION = ".expiration";
+    private static final String KEY_REFRESH_TOKEN = ".refresh_token";
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+    private static final Logger logger = Logger.getLogger(FileTokenStore.class.getName());
+
+    private final Path file;
+    private final Properties props = new Properties();
+
+    private FileTokenStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the token store in the given file. A missing file results in an empty store.
+     *
+     * @param fileName Name of the token file
+     * @return FileTokenStore instance
+     * @throws IOException if the file exists but could not be read
+     */
+    public static FileTokenStore open(String fileName) throws IOException {
+        FileTokenStore store = new FileTokenStore(Path.of(fileName));
+        if (!Files.exists(store.file)) {
+            return store;
+        }
+
+        if (isPosix() && !Files.getPosixFilePermissions(store.file).equals(OWNER_ONLY)) {
+            logger.warning("Token file " + fileName + " was accessible to others, restricting it to its owner.");
+            Files.setPosixFilePermissions(store.file, OWNER_ONLY);
+        }
+        try (Reader in = Files.newBufferedReader(store.file, StandardCharsets.UTF_8)) {
+            store.props.load(in);
+        }
+        return store;
+    }
+
+    @Override
+    public synchronized void storeLatest(String username, OAuthData data) {
+        props.setProperty(username + KEY_ACCESS_TOKEN, data.getAccessToken());
+        props.setProperty(username + KEY_SCOPES, String.join(" ", data.getScopes()));
+        props.setProperty(username + KEY_EXPIRATION, Long.toString(data.getExpiration().getTime()));
+        if (data.getRefreshToken() != null) {
+            props.setProperty(username + KEY_REFRESH_TOKEN, data.getRefreshToken());
+        }
+        save();
+    }
+
+    @Override
+    public synchronized void storeRefreshToken(String username, String token) {
+        props.setProperty(username + KEY_REFRESH_TOKEN, token);
+        save();
+    }
+
+    @Override
+    public synchronized OAuthData fetchLatest(String username) {
+        String accessToken = props.getProperty(username + KEY_ACCESS_TOKEN);
+        String expiration = props.getProperty(username + KEY_EXPIRATION);
+        if (accessToken == null || expiration == null) {
+            return null;
+        }
+        List<String> scopes = Arrays.stream(props.getProperty(username + KEY_SCOPES, "").split(" "))
+                .filter(scope -> !scope.isEmpty())
+                .toList();
+        try {
+            return OAuthData.create(accessToken, scopes, props.getProperty(username + KEY_REFRESH_TOKEN),
+                    new Date(Long.parseLong(expiration)));
+        } catch (NumberFormatException e) {
+            logger.warning("Ignoring stored access token of " + username + " with invalid expiration: " + expiration);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized String fetchRefreshToken(String username) {
+        return props.getProperty(username + KEY_REFRESH_TOKEN);
+    }
+
+    @Override
+    public synchronized void deleteLatest(String username) {
+        props.remove(username + KEY_ACCESS_TOKEN);
+        props.remove(username + KEY_SCOPES);
+        props.remove(username + KEY_EXPIRATION);
+        save();
+    }
+
+    @Override
+    public synchronized void deleteRefreshToken(String username) {
+        props.remove(username + KEY_REFRESH_TOKEN);
+        save();
+    }
+
+    private void save() {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(temp);
+            if (isPosix()) {
+                // Created restricted, so the token is never readable by others, not even briefly
+                Files.createFile(temp, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+            }
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                props.store(out, "Reddit access tokens, keep private");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The token stays usable in this run, the next run just logs in again
+            logger.log(Level.SEVERE, "Failed to save token file: " + file, e);
+        }
+    }
+
+    private static boolean isPosix() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+}
@@ -0,0 +1,78 @@
+package de.InVinoVeritas;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the HTTP client shared by the page fetches, the image prefetch and the Reddit API.
+ * <p>
+ * One client means one connection pool, so connections and TLS sessions to a host are reused across feeds, polls and
+ * API calls. OkHttp negotiates HTTP/2 where the server supports it and requests and decodes gzip transparently. Host
+ * names are resolved once per DNS cache period, and every call is bounded by the timeouts of the configuration, so a
+ * hung server cannot stall a poll.
+ */
+final class HttpClients {
+    // Idle connections kept per pool, and for how long
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final int KEEP_ALIVE_MINUTES = 5;
+
+    private HttpClients() {
+    }
+
+    /**
+     * Creates the shared client. Clients for special purposes are derived from it with
+     * {@link OkHttpClient#newBuilder()}, which keeps the pool and the DNS cache.
+     *
+     * @param config Configuration with the timeouts
+     * @return Shared client
+     */
+    static OkHttpClient create(Config config) {
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .dns(new CachingDns(TimeUnit.SECONDS.toMillis(config.getDnsCacheSeconds())))
+                .connectTimeout(config.getConnectTimeoutSeconds(), TimeUnit.SECONDS)
+                .readTimeout(config.getReadTimeoutSeconds(), TimeUnit.SECONDS)
+                .writeTimeout(config.getReadTimeoutSeconds(), TimeUnit.SECONDS)
+                .callTimeout(config.getCallTimeoutSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Resolves host names through the system resolver, keeping successful lookups for a fixed time.
+     */
+    static final class CachingDns implements Dns {
+        private final long ttlMillis;
+        private final Map<String, Lookup> lookups = new ConcurrentHashMap<>();
+
+        private record Lookup(List<InetAddress> addresses, long expiresAtMillis) {
+        }
+
+        CachingDns(long ttlMillis) {
+            this.ttlMillis = ttlMillis;
+        }
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            Lookup cached = lookups.get(hostname);
+            long now = System.currentTimeMillis();
+            if (cached != null && cached.expiresAtMillis() > now) {
+                return cached.addresses();
+            }
+
+            // Failures are not cached, the next call tries again
+            List<InetAddress> addresses = Dns.SYSTEM.lookup(hostname);
+            lookups.put(hostname, new Lookup(List.copyOf(addresses), now + ttlMillis));
+            return addresses;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package de.InVinoVeritas;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Prefetches the images of news into a size-bounded directory, so an image that no longer resolves is known before its
+ * news is posted and no image is downloaded twice.
+ * <p>
+ * Each image is stored under the digest of its URL, next to a {@code .etag} file with its validator, and revalidated
+ * with a conditional GET when it is prefetched again. An image served without an ETag is reused as it is. When the
+ * cache exceeds its size limit, the least recently used images are removed; the last modified time of a file records
+ * its last use, so the order survives restarts.
+ */
+public class ImageCache {
+    private static final String ETAG_SUFFIX = ".etag";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAX_IMAGE_BYTES = 20 * 1024 * 1024;
+
+    private static final Logger logger = Logger.getLogger(ImageCache.class.getName());
+
+    private final Path dir;
+    private final long maxBytes;
+    private final OkHttpClient httpClient;
+    private final Semaphore downloads;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Prefetches in progress by URL, so an image is only fetched once at a time
+    private final Map<String, CompletableFuture<Path>> pending = new ConcurrentHashMap<>();
+
+    // URLs answered with HTTP 404 or 410
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+    // Sizes of the cached images by file name, least recently used first
+    private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private ImageCache(Path dir, long maxBytes, int maxParallel, OkHttpClient httpClient) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.httpClient = httpClient;
+        this.downloads = new Semaphore(maxParallel);
+    }
+
+    /**
+     * Opens the cache in the given directory, creating it if needed.
+     *
+     * @param dirName     Cache directory
+     * @param maxBytes    Size the cached images may take
+     * @param maxParallel Number of images fetched at the same time
+     * @param httpClient  Client the images are fetched with
+     * @return ImageCache instance
+     * @throws IOException if the directory could not be read
+     */
+    public static ImageCache open(String dirName, long maxBytes, int maxParallel, OkHttpClient httpClient)
+            throws IOException {
+        ImageCache cache = new ImageCache(Path.of(dirName), maxBytes, maxParallel, httpClient);
+        Files.createDirectories(cache.dir);
+
+        List<Path> images;
+        try (Stream<Path> files = Files.list(cache.dir)) {
+            images = files.toList();
+        }
+        for (Path file : images) {
+            // Left by a download that was cut off
+            if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                Files.deleteIfExists(file);
+            }
+        }
+        List<Path> sorted = images.stream()
+                .filter(file -> !file.getFileName().toString().contains("."))
+                .sorted(Comparator.comparing(ImageCache::lastModified))
+                .toList();
+        synchronized (cache) {
+            for (Path image : sorted) {
+                long size = Files.size(image);
+                cache.sizes.put(image.getFileName().toString(), size);
+                cache.totalBytes += size;
+            }
+            cache.evict();
+        }
+        return cache;
+    }
+
+    /**
+     * Starts fetching an image in the background, unless it is being fetched already. Failures are logged.
+     *
+     * @param url URL of the image
+     * @return Future of the cached image, completing with null if the image does not exist
+     */
+    public CompletableFuture<Path> prefetch(String url) {
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> running = pending.putIfAbsent(url, future);
+        if (running != null) {
+            return running;
+        }
+
+        executor.execute(() -> {
+            try {
+                future.complete(fetch(url));
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to prefetch image " + url, e);
+                future.completeExceptionally(e);
+            } finally {
+                pending.remove(url);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Checks whether a prefetch found that an image does not exist. Never waits for a running prefetch.
+     *
+     * @param url URL of the image
+     * @return true if the image server answered with HTTP 404 or 410
+     */
+    public boolean isMissing(String url) {
+        return missing.contains(url);
+    }
+
+    /**
+     * Downloads an image, or revalidates the cached copy.
+     *
+     * @return The cached image, or null if it does not exist
+     */
+    private Path fetch(String url) throws IOException, InterruptedException {
+        // A relative or malformed image source cannot be fetched, or linked either
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            missing.add(url);
+            logger.warning("News image has no valid URL: " + url);
+            return null;
+        }
+
+        String name = PageCache.digest(url.getBytes(StandardCharsets.UTF_8));
+        Path image = dir.resolve(name);
+        Path etagFile = dir.resolve(name + ETAG_SUFFIX);
+
+        String etag = null;
+        if (isCached(name)) {
+            if (!Files.exists(etagFile)) {
+                touch(name);
+                return image;
+            }
+            etag = Files.readString(etagFile, StandardCharsets.UTF_8).trim();
+        }
+
+        Request.Builder request = new Request.Builder().url(httpUrl);
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        downloads.acquire();
+        Metrics.Sample imageSample = Metrics.start(Metrics.Stage.IMAGE);
+        try (Response response = httpClient.newCall(request.build()).execute()) {
+            int status = response.code();
+            if (status == 304 && etag != null) {
+                Metrics.Counter.IMAGES_NOT_MODIFIED.increment();
+                touch(name);
+                return image;
+            }
+            if (status == 404 || status == 410) {
+                missing.add(url);
+                logger.warning("News image does not exist (HTTP " + status + "): " + url);
+                return null;
+            }
+            if (status != 200) {
+                throw new IOException("HTTP " + status + " fetching " + url);
+            }
+
+            // Written aside first, so a cut off download never replaces a cached image
+            Path temp = dir.resolve(name + TEMP_SUFFIX);
+            long size = download(response.body(), temp, url);
+            Files.move(temp, image, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            String newEtag = response.header("ETag");
+            if (newEtag != null) {
+                Files.writeString(etagFile, newEtag, StandardCharsets.UTF_8);
+            } else {
+                Files.deleteIfExists(etagFile);
+            }
+            Metrics.Counter.IMAGES_DOWNLOADED.increment();
+            Metrics.Counter.IMAGE_BYTES_FETCHED.add(size);
+            added(name, size);
+            return image;
+        } finally {
+            imageSample.stop();
+            downloads.release();
+        }
+    }
+
+    /**
+     * Streams a response body into a file, without holding the whole image in memory.
+     *
+     * @return Number of bytes written
+     * @throws IOException if the body could not be read or exceeds the size limit
+     */
+    private static long download(ResponseBody body, Path file, String url) throws IOException {
+        long size = 0;
+        try (BufferedSource source = body.source(); BufferedSink sink = Okio.buffer(Okio.sink(file))) {
+            Buffer buffer = sink.buffer();
+            for (long read; (read = source.read(buffer, 8192)) != -1; ) {
+                size += read;
+                if (size > MAX_IMAGE_BYTES) {
+                    throw new IOException("Image exceeds " + MAX_IMAGE_BYTES + " bytes: " + url);
+                }
+                sink.emitCompleteSegments();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return size;
+    }
+
+    private synchronized boolean isCached(String name) {
+        return sizes.containsKey(name);
+    }
+
+    /**
+     * Marks a cached image as just used.
+     */
+    private synchronized void touch(String name) {
+        sizes.get(name);
+        try {
+            Files.setLastModifiedTime(dir.resolve(name), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to update image cache entry " + name, e);
+        }
+    }
+
+    /**
+     * Records a downloaded image and removes the least recently used ones if the cache got too large.
+     */
+    private synchronized void added(String name, long size) {
+        Long previous = sizes.put(name, size);
+        totalBytes += size - (previous != null ? previous : 0);
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> entries = sizes.entrySet().iterator();
+        // The most recently used image is kept even if it alone exceeds the limit
+        while (totalBytes > maxBytes && sizes.size() > 1) {
+            Map.Entry<String, Long> eldest = entries.next();
+            try {
+                Files.deleteIfExists(dir.resolve(eldest.getKey()));
+                Files.deleteIfExists(dir.resolve(eldest.getKey() + ETAG_SUFFIX));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to remove image cache entry " + eldest.getKey(), e);
+            }
+            totalBytes -= eldest.getValue();
+            entries.remove();
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
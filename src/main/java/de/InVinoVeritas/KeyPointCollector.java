@@ -0,0 +1,126 @@
+package de.InVinoVeritas;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+
+import java.util.List;
+
+/**
+ * Collects the key points of a key point cell by walking its DOM once.
+ * <p>
+ * Each key point starts at a bullet marker span ({@code <span style="color: #08c">✪</span>}) and runs up to the next
+ * marker or the end of the cell. Text before the first marker is ignored. Whitespace is normalized the same way as
+ * {@link Element#text()} does it.
+ */
+class KeyPointCollector implements NodeFilter {
+    // Bullet symbol inside the marker span
+    private static final String BULLET = "✪";
+
+    // Style fragment identifying the marker span
+    private static final String BULLET_STYLE = "color: #08c";
+
+    private final List<String> keyPoints;
+    private final StringBuilder accum = new StringBuilder();
+    private boolean inKeyPoint;
+
+    private KeyPointCollector(List<String> keyPoints) {
+        this.keyPoints = keyPoints;
+    }
+
+    /**
+     * Extracts the key points of a cell and adds them to the given list.
+     *
+     * @param keyPointsTd Cell containing the key points
+     * @param keyPoints   List the key points are added to
+     */
+    static void collect(Element keyPointsTd, List<String> keyPoints) {
+        KeyPointCollector collector = new KeyPointCollector(keyPoints);
+        NodeTraversor.filter(collector, keyPointsTd);
+        collector.finishKeyPoint();
+    }
+
+    @Override
+    public FilterResult head(Node node, int depth) {
+        if (node instanceof Element element) {
+            if (isBulletMarker(element)) {
+                finishKeyPoint();
+                inKeyPoint = true;
+                return FilterResult.SKIP_ENTIRELY;
+            }
+
+            // Block elements and line breaks separate words
+            if (inKeyPoint && accum.length() > 0 && (element.isBlock() || element.nameIs("br")) && !lastCharIsWhitespace()) {
+                accum.append(' ');
+            }
+        } else if (inKeyPoint && node instanceof TextNode textNode) {
+            if (textNode.parent() instanceof Element parent && parent.tag().preserveWhitespace()) {
+                accum.append(textNode.getWholeText());
+            } else {
+                appendNormalizedWhitespace(textNode.getWholeText());
+            }
+        }
+        return FilterResult.CONTINUE;
+    }
+
+    @Override
+    public FilterResult tail(Node node, int depth) {
+        // Make sure text following a block element is separated from it, e.g. "<div>One</div>Two"
+        if (inKeyPoint && node instanceof Element element && !element.tag().isInline()) {
+            Node next = node.nextSibling();
+            if ((next instanceof TextNode || next instanceof Element nextElement && nextElement.tag().isInline())
+                    && !lastCharIsWhitespace()) {
+                accum.append(' ');
+            }
+        }
+        return FilterResult.CONTINUE;
+    }
+
+    /**
+     * Adds the key point collected so far, if it contains any text.
+     */
+    private void finishKeyPoint() {
+        if (inKeyPoint) {
+            String keyPoint = accum.toString().trim();
+            if (!keyPoint.isEmpty()) {
+                keyPoints.add(keyPoint);
+            }
+        }
+        accum.setLength(0);
+    }
+
+    /**
+     * Appends text with each run of whitespace collapsed to a single space, dropping whitespace at the start of a key
+     * point or after a space, and dropping invisible characters like soft hyphens.
+     */
+    private void appendNormalizedWhitespace(String text) {
+        boolean lastWasWhite = accum.isEmpty() || lastCharIsWhitespace();
+        for (int i = 0; i < text.length(); ) {
+            int c = text.codePointAt(i);
+            i += Character.charCount(c);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == '\u00a0') {
+                if (!lastWasWhite) {
+                    accum.append(' ');
+                    lastWasWhite = true;
+                }
+            } else if (c != '\u200b' && c != '\u00ad') {
+                accum.appendCodePoint(c);
+                lastWasWhite = false;
+            }
+        }
+    }
+
+    private boolean lastCharIsWhitespace() {
+        return accum.length() > 0 && accum.charAt(accum.length() - 1) == ' ';
+    }
+
+    private static boolean isBulletMarker(Element element) {
+        return element.nameIs("span")
+                && element.childNodeSize() == 1
+                && element.childNode(0) instanceof TextNode text
+                && BULLET.equals(text.getWholeText())
+                && element.attr("style").contains(BULLET_STYLE);
+    }
+}
@@ -0,0 +1,210 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.Headline;
+import de.InVinoVeritas.RyzomRedditBot.NewsItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders news items as Reddit posts within Reddit's size limits.
+ * <p>
+ * The news is rendered once into a per-thread buffer. While rendering, the text is cut into parts that fit the limits:
+ * the first part becomes the submission, the following parts comments on it. Cuts are made in front of a headline where
+ * possible, else in front of a key point, and only a single key point longer than a whole comment is cut mid-text.
+ */
+final class MarkdownRenderer {
+    // Reddit's limits, in characters
+    static final int MAX_TITLE_LENGTH = 300;
+    static final int MAX_SELFTEXT_LENGTH = 40_000;
+    static final int MAX_COMMENT_LENGTH = 10_000;
+
+    private static final String CONTINUED = "*Continued in the comments.*\n";
+
+    // Characters with a meaning inside a line of Reddit Markdown
+    private static final String SPECIAL_CHARACTERS = "\\`*_~^[]<>|";
+
+    // Rendering buffer, large enough for a whole submission so it rarely grows
+    private static final ThreadLocal<StringBuilder> buffers =
+            ThreadLocal.withInitial(() -> new StringBuilder(MAX_SELFTEXT_LENGTH + 1024));
+
+    private MarkdownRenderer() {
+    }
+
+    /**
+     * Returns the title of the post: the news title, or its date if it has none, shortened to Reddit's limit.
+     *
+     * @param news The news item
+     * @return Title of the post
+     */
+    static String title(NewsItem news) {
+        String title = (news.title != null && !news.title.isEmpty() ? news.title : news.date).strip();
+        if (title.length() <= MAX_TITLE_LENGTH) {
+            return title;
+        }
+        int end = MAX_TITLE_LENGTH - 1;
+        if (Character.isHighSurrogate(title.charAt(end - 1))) {
+            end--;
+        }
+        return title.substring(0, end) + "…";
+    }
+
+    /**
+     * Renders a news item as Markdown, split into parts that fit Reddit's limits.
+     *
+     * @param news      The news item
+     * @param imageLink Whether to link the image of the news, if it has one
+     * @return The submission text, followed by the texts of the comments continuing it
+     */
+    static List<String> render(NewsItem news, boolean imageLink) {
+        StringBuilder sb = buffers.get();
+        sb.setLength(0);
+
+        // The footer goes at the end of the submission, so render it first to know the space left
+        if (!news.date.isEmpty()) {
+            sb.append("\nOriginally published on ").append(news.date).append("\n\n");
+        }
+        if (imageLink && news.imageUrl != null && !news.imageUrl.trim().isEmpty()) {
+            sb.append("[View news image](");
+            appendUrl(news.imageUrl, sb);
+            sb.append(") \n");
+        }
+        sb.append("[Read more here](");
+        appendUrl(news.url, sb);
+        sb.append(")\n");
+        int footerEnd = sb.length();
+
+        Parts parts = new Parts(sb, footerEnd, MAX_SELFTEXT_LENGTH - footerEnd - CONTINUED.length() - 1);
+        for (Headline headline : news.headlines) {
+            int headlineStart = sb.length();
+            sb.append("## ");
+            appendEscaped(headline.title(), sb);
+            sb.append('\n');
+            parts.fit(headlineStart, headlineStart);
+
+            if (headline.keyPoints() != null && !headline.keyPoints().isEmpty()) {
+                for (String point : headline.keyPoints()) {
+                    int pointStart = sb.length();
+                    sb.append("- ");
+                    appendEscaped(point, sb);
+                    sb.append('\n');
+                    parts.fit(headlineStart, pointStart);
+                }
+                sb.append('\n');
+                parts.fit(headlineStart, sb.length() - 1);
+            }
+        }
+
+        // Assemble the submission from its headlines, the continuation note and the footer
+        List<String> texts = new ArrayList<>(parts.cuts.size() + 1);
+        int firstEnd = parts.cuts.isEmpty() ? sb.length() : parts.cuts.getFirst();
+        StringBuilder submission = new StringBuilder(firstEnd - footerEnd + CONTINUED.length() + footerEnd + 1);
+        submission.append(sb, footerEnd, firstEnd);
+        if (!parts.cuts.isEmpty()) {
+            submission.append('\n').append(CONTINUED);
+        }
+        submission.append(sb, 0, footerEnd);
+        texts.add(submission.toString());
+
+        for (int i = 0; i < parts.cuts.size(); i++) {
+            int end = i + 1 < parts.cuts.size() ? parts.cuts.get(i + 1) : sb.length();
+            texts.add(sb.substring(parts.cuts.get(i), end));
+        }
+        return texts;
+    }
+
+    /**
+     * Renders a news item as plain text for channels without Markdown, headlines on their own lines followed by their
+     * key points. The text is not shortened, each channel applies its own limit.
+     *
+     * @param news The news item
+     * @return Plain text of the news
+     */
+    static String text(NewsItem news) {
+        StringBuilder sb = new StringBuilder();
+        for (Headline headline : news.headlines) {
+            if (!sb.isEmpty()) {
+                sb.append('\n');
+            }
+            sb.append(headline.title()).append('\n');
+            if (headline.keyPoints() != null) {
+                for (String point : headline.keyPoints()) {
+                    sb.append("- ").append(point).append('\n');
+                }
+            }
+        }
+        return sb.toString().strip();
+    }
+
+    /**
+     * Appends text with all characters that would be read as Markdown escaped.
+     *
+     * @param text Plain text
+     * @param sb   Buffer to append to
+     */
+    static void appendEscaped(String text, StringBuilder sb) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (SPECIAL_CHARACTERS.indexOf(c) >= 0) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+    }
+
+    /**
+     * Appends a URL as link target, encoding the characters that would end it.
+     */
+    private static void appendUrl(String url, StringBuilder sb) {
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            switch (c) {
+                case ' ' -> sb.append("%20");
+                case '(' -> sb.append("%28");
+                case ')' -> sb.append("%29");
+                default -> sb.append(c);
+            }
+        }
+    }
+
+    /**
+     * Where the rendered text is cut into parts.
+     */
+    private static final class Parts {
+        private final StringBuilder sb;
+        private final int firstBudget;
+        private final List<Integer> cuts = new ArrayList<>();
+        private int partStart;
+
+        private Parts(StringBuilder sb, int bodyStart, int firstBudget) {
+            this.sb = sb;
+            this.partStart = bodyStart;
+            this.firstBudget = firstBudget;
+        }
+
+        /**
+         * Cuts the text rendered so far until the last part fits its limit.
+         *
+         * @param headlineStart Start of the headline being rendered, the preferred cut
+         * @param lineStart     Start of the line just rendered, the cut if the headline alone is too long
+         */
+        private void fit(int headlineStart, int lineStart) {
+            while (sb.length() - partStart > (cuts.isEmpty() ? firstBudget : MAX_COMMENT_LENGTH)) {
+                int cut;
+                if (headlineStart > partStart) {
+                    cut = headlineStart;
+                } else if (lineStart > partStart) {
+                    cut = lineStart;
+                } else {
+                    // A single line longer than a comment, cut it without splitting a character or an escape
+                    cut = partStart + (cuts.isEmpty() ? firstBudget : MAX_COMMENT_LENGTH);
+                    if (Character.isLowSurrogate(sb.charAt(cut)) || sb.charAt(cut - 1) == '\\') {
+                        cut--;
+                    }
+                }
+                cuts.add(cut);
+                partStart = cut;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.RenderedNews;
+import okhttp3.FormBody;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Toots news to a Mastodon account: the title and the link to the release note.
+ */
+final class MastodonSink implements Sink {
+    // Default status limit of Mastodon servers, in characters
+    private static final int MAX_STATUS_LENGTH = 500;
+
+    private final HttpUrl statuses;
+    private final String token;
+    private final OkHttpClient httpClient;
+
+    /**
+     * @param serverUrl  Base URL of the Mastodon server
+     * @param token      Access token of the account, with the write:statuses scope
+     * @param httpClient Client with the timeouts of this sink
+     */
+    MastodonSink(String serverUrl, String token, OkHttpClient httpClient) {
+        this.statuses = HttpUrl.get(serverUrl).newBuilder().encodedPath("/api/v1/statuses").build();
+        this.token = token;
+        this.httpClient = httpClient;
+    }
+
+    @Override
+    public String name() {
+        return "mastodon";
+    }
+
+    @Override
+    public void publish(RenderedNews news) throws IOException {
+        String link = "\n\n" + news.news().url;
+        String status = Sink.shorten(news.title(), Math.max(1, MAX_STATUS_LENGTH - link.length())) + link;
+
+        Request request = new Request.Builder()
+                .url(statuses)
+                .header("Authorization", "Bearer " + token)
+                // A retry after a lost response must not toot the news twice
+                .header("Idempotency-Key", PageCache.digest(news.news().url.getBytes(StandardCharsets.UTF_8)))
+                .post(new FormBody.Builder().add("status", status).add("visibility", "public").build())
+                .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Mastodon answered HTTP " + response.code());
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package de.InVinoVeritas;
+
+import com.sun.net.httpserver.HttpServer;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and stage timings of the bot, exposed in the Prometheus text format and as JFR events.
+ * <p>
+ * Recording is lock-free and allocation-light, so it stays enabled whether or not anything collects the metrics. Every
+ * timed stage also emits a {@code de.InVinoVeritas.Stage} JFR event, and every poll a {@code de.InVinoVeritas.Poll}
+ * event with the counts of that poll, so a flight recording shows the same data per occurrence.
+ */
+public final class Metrics {
+    // Upper bounds of the stage duration histogram buckets in seconds
+    private static final double[] BUCKETS = {0.001, 0.005, 0.01, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300};
+
+    /**
+     * Timed stages of a poll.
+     */
+    public enum Stage {
+        POLL, FETCH, PARSE, RENDER, IMAGE, SUBMIT, FLAIR, COMMENT, EDIT, PERSIST;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+
+        Stage() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void observe(long nanos) {
+            double seconds = nanos / 1e9;
+            int bucket = 0;
+            while (bucket < BUCKETS.length && seconds > BUCKETS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            sumNanos.add(nanos);
+        }
+
+        private String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Counters, all only ever increasing.
+     */
+    public enum Counter {
+        ITEMS_SEEN("ryzombot_items_seen_total", "News items parsed from fetched pages"),
+        ITEMS_NEW("ryzombot_items_new_total", "News items not posted to a subreddit yet"),
+        ITEMS_POSTED("ryzombot_items_posted_total", "News items posted to a subreddit"),
+        ITEMS_EDITED("ryzombot_items_edited_total", "Posted news items whose submission was updated after a change"),
+        ITEMS_FAILED("ryzombot_items_failed_total", "News items that could not be rendered or submitted"),
+        BYTES_FETCHED("ryzombot_fetched_bytes_total", "Bytes of release notes pages fetched"),
+        NOT_MODIFIED("ryzombot_page_not_modified_total", "Page fetches answered with HTTP 304"),
+        UNCHANGED("ryzombot_page_unchanged_total", "Page fetches with content identical to the last processed page"),
+        IMAGES_DOWNLOADED("ryzombot_images_downloaded_total", "News images downloaded into the image cache"),
+        IMAGES_NOT_MODIFIED("ryzombot_images_not_modified_total", "Cached news images revalidated with HTTP 304"),
+        IMAGE_BYTES_FETCHED("ryzombot_image_fetched_bytes_total", "Bytes of news images downloaded"),
+        RATE_LIMIT_WAITS("ryzombot_rate_limit_waits_total", "Reddit API requests held back by the rate limit"),
+        RETRIES("ryzombot_reddit_retries_total", "Reddit API calls retried after a transient failure"),
+        DUPLICATES("ryzombot_duplicates_total", "News items missing from the store but found already posted to a subreddit"),
+        SINK_DELIVERED("ryzombot_sink_delivered_total", "News items published to a sink besides Reddit"),
+        SINK_FAILED("ryzombot_sink_failed_total", "News items a sink failed to publish after all attempts");
+
+        private final String metricName;
+        private final String help;
+        private final LongAdder value = new LongAdder();
+
+        Counter(String metricName, String help) {
+            this.metricName = metricName;
+            this.help = help;
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    // Unix time of the last finished poll and the last post, to alert when either stalls
+    private static final AtomicLong lastPollSeconds = new AtomicLong();
+    private static final AtomicLong lastPostSeconds = new AtomicLong();
+
+    private Metrics() {
+    }
+
+    /**
+     * Starts timing a stage, to be ended with {@link Sample#stop()}.
+     *
+     * @param stage Stage to time
+     * @return Running sample
+     */
+    public static Sample start(Stage stage) {
+        return new Sample(stage);
+    }
+
+    /**
+     * Starts timing a poll, to be ended with {@link PollSample#stop()}.
+     *
+     * @return Running sample
+     */
+    public static PollSample startPoll() {
+        return new PollSample();
+    }
+
+    /**
+     * Counts a posted news item and remembers when it was posted.
+     */
+    public static void posted() {
+        Counter.ITEMS_POSTED.increment();
+        lastPostSeconds.set(System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text exposition format.
+     *
+     * @return Metrics text
+     */
+    public static String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        for (Counter counter : Counter.values()) {
+            sb.append("# HELP ").append(counter.metricName).append(' ').append(counter.help).append('\n')
+                    .append("# TYPE ").append(counter.metricName).append(" counter\n")
+                    .append(counter.metricName).append(' ').append(counter.get()).append('\n');
+        }
+
+        String name = "ryzombot_stage_duration_seconds";
+        sb.append("# HELP ").append(name).append(" Duration of the stages of a poll\n")
+                .append("# TYPE ").append(name).append(" histogram\n");
+        for (Stage stage : Stage.values()) {
+            long cumulative = 0;
+            for (int i = 0; i < stage.buckets.length; i++) {
+                cumulative += stage.buckets[i].sum();
+                String bound = i < BUCKETS.length ? Double.toString(BUCKETS[i]) : "+Inf";
+                sb.append(name).append("_bucket{stage=\"").append(stage.label()).append("\",le=\"").append(bound)
+                        .append("\"} ").append(cumulative).append('\n');
+            }
+            sb.append(name).append("_sum{stage=\"").append(stage.label()).append("\"} ")
+                    .append(stage.sumNanos.sum() / 1e9).append('\n')
+                    .append(name).append("_count{stage=\"").append(stage.label()).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+
+        appendGauge(sb, "ryzombot_last_poll_timestamp_seconds", "Unix time of the last finished poll", lastPollSeconds.get());
+        appendGauge(sb, "ryzombot_last_post_timestamp_seconds", "Unix time of the last post", lastPostSeconds.get());
+        return sb.toString();
+    }
+
+    /**
+     * Serves the metrics at {@code /metrics}. The endpoint has no authentication, so it only listens on the loopback
+     * interface unless a host is given.
+     *
+     * @param host Host name or address to listen on, e.g. {@code 0.0.0.0} for all interfaces, empty for loopback
+     * @param port Port to listen on
+     * @return The started server
+     * @throws IOException if the address could not be bound
+     */
+    public static HttpServer serve(String host, int port) throws IOException {
+        InetSocketAddress address = host.isEmpty()
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+                : new InetSocketAddress(host, port);
+        if (address.isUnresolved()) {
+            throw new IOException("Unknown metrics host: " + host);
+        }
+        HttpServer server = HttpServer.create(address, 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static void appendGauge(StringBuilder sb, String name, String help, long value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" gauge\n")
+                .append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * A running stage timing.
+     */
+    public static final class Sample {
+        private final Stage stage;
+        private final long startNanos = System.nanoTime();
+        private final StageEvent event = new StageEvent();
+
+        private Sample(Stage stage) {
+            this.stage = stage;
+            event.begin();
+        }
+
+        /**
+         * Records the time since the sample was started.
+         */
+        public void stop() {
+            stage.observe(System.nanoTime() - startNanos);
+            if (event.shouldCommit()) {
+                event.stage = stage.label();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * A running poll timing, which also records the counts of the poll.
+     */
+    public static final class PollSample {
+        private final Sample sample = start(Stage.POLL);
+        private final PollEvent event = new PollEvent();
+        private final long seen = Counter.ITEMS_SEEN.get();
+        private final long added = Counter.ITEMS_NEW.get();
+        private final long posted = Counter.ITEMS_POSTED.get();
+        private final long failed = Counter.ITEMS_FAILED.get();
+        private final long bytes = Counter.BYTES_FETCHED.get();
+
+        private PollSample() {
+            event.begin();
+        }
+
+        /**
+         * Records the time and counts since the poll was started.
+         */
+        public void stop() {
+            sample.stop();
+            lastPollSeconds.set(System.currentTimeMillis() / 1000);
+            if (event.shouldCommit()) {
+                event.itemsSeen = Counter.ITEMS_SEEN.get() - seen;
+                event.itemsNew = Counter.ITEMS_NEW.get() - added;
+                event.itemsPosted = Counter.ITEMS_POSTED.get() - posted;
+                event.itemsFailed = Counter.ITEMS_FAILED.get() - failed;
+                event.bytesFetched = Counter.BYTES_FETCHED.get() - bytes;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("de.InVinoVeritas.Stage")
+    @Label("Bot Stage")
+    @Category("RyzomRedditBot")
+    @Description("A stage of a poll: fetch, parse, render, submit, flair or persist")
+    static class StageEvent extends Event {
+        @Label("Stage")
+        String stage;
+    }
+
+    @Name("de.InVinoVeritas.Poll")
+    @Label("Bot Poll")
+    @Category("RyzomRedditBot")
+    @Description("A poll of all release notes feeds")
+    static class PollEvent extends Event {
+        @Label("Items Seen")
+        long itemsSeen;
+
+        @Label("Items New")
+        long itemsNew;
+
+        @Label("Items Posted")
+        long itemsPosted;
+
+        @Label("Items Failed")
+        long itemsFailed;
+
+        @Label("Bytes Fetched")
+        @DataAmount
+        long bytesFetched;
+    }
+}
@@ -0,0 +1,125 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.Headline;
+import de.InVinoVeritas.RyzomRedditBot.NewsItem;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.QueryParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Extracts the news items of the release notes main table in a single pass over its DOM.
+ * <p>
+ * Each news consists of a header row with a link to the news (date and title as link text), followed by a row
+ * holding the news image and a nested table with the headlines and key points.
+ */
+class NewsCollector implements NodeFilter {
+    // Precompiled selectors, matched against single elements while walking the tree
+    private static final Evaluator ROW = QueryParser.parse("tr");
+    private static final Evaluator HEADER_LINK = QueryParser.parse("a[target=_blank]");
+    private static final Evaluator IMAGE = QueryParser.parse("img");
+    private static final Evaluator NEWS_TABLE = QueryParser.parse("table");
+
+    // Link text of the header row that does not belong to a news
+    private static final String RELEASE_INFORMATION = "Release-Information";
+
+    private final Consumer<NewsItem> sink;
+    private final Predicate<String> stopAtUrl;
+
+    // Row currently being walked, either a potential header row or the row following a header
+    private Element currentRow;
+    private Element headerLink;
+
+    // Header of the news whose image and news table row comes next, null while looking for a header
+    private String pendingDateTitle;
+    private String pendingUrl;
+    private String currentImageUrl;
+    private List<Headline> currentHeadlines;
+
+    private NewsCollector(Consumer<NewsItem> sink, Predicate<String> stopAtUrl) {
+        this.sink = sink;
+        this.stopAtUrl = stopAtUrl;
+    }
+
+    /**
+     * Walks the main table and passes every news item to the sink as soon as it is complete, newest first.
+     *
+     * @param mainTable Main table of the release notes page
+     * @param stopAtUrl Predicate matching the URL of a news where parsing stops, or null to parse the whole table
+     * @param sink      Consumer receiving the news items
+     */
+    static void collect(Element mainTable, Predicate<String> stopAtUrl, Consumer<NewsItem> sink) {
+        NodeTraversor.filter(new NewsCollector(sink, stopAtUrl), mainTable);
+    }
+
+    @Override
+    public FilterResult head(Node node, int depth) {
+        if (!(node instanceof Element element)) {
+            return FilterResult.CONTINUE;
+        }
+
+        if (currentRow == null) {
+            // Rows nested inside the current row belong to it
+            if (element.is(ROW)) {
+                currentRow = element;
+                headerLink = null;
+                currentImageUrl = null;
+                currentHeadlines = null;
+            }
+        } else if (pendingDateTitle == null) {
+            // Header row: remember the first link
+            if (headerLink == null && element.is(HEADER_LINK)) {
+                headerLink = element;
+            }
+        } else {
+            // Image and news row
+            if (currentImageUrl == null && element.is(IMAGE)) {
+                currentImageUrl = element.attr("src");
+            } else if (currentHeadlines == null && element.is(NEWS_TABLE)) {
+                currentHeadlines = RyzomRedditBot.parseHeadlinesAndPoints(element);
+
+                // The news table was parsed on its own, only an image might still be inside
+                return currentImageUrl == null ? FilterResult.CONTINUE : FilterResult.SKIP_ENTIRELY;
+            }
+        }
+        return FilterResult.CONTINUE;
+    }
+
+    @Override
+    public FilterResult tail(Node node, int depth) {
+        if (node != currentRow) {
+            return FilterResult.CONTINUE;
+        }
+        currentRow = null;
+
+        if (pendingDateTitle != null) {
+            // Save the news item
+            List<Headline> headlines = currentHeadlines != null ? currentHeadlines : new ArrayList<>();
+            sink.accept(new NewsItem(pendingDateTitle, pendingUrl, currentImageUrl, headlines));
+            pendingDateTitle = null;
+            pendingUrl = null;
+        } else if (headerLink != null) {
+            String linkText = headerLink.text().trim();
+            String linkHref = headerLink.attr("href").trim();
+
+            if (!linkText.equalsIgnoreCase(RELEASE_INFORMATION)) {
+                // Everything below this news is older and therefore already known
+                if (stopAtUrl != null && stopAtUrl.test(linkHref)) {
+                    return FilterResult.STOP;
+                }
+
+                // This is a date/title header, e.g., "2025-04-15: New Event Hide n Hype"
+                pendingDateTitle = linkText;
+                pendingUrl = linkHref;
+            }
+        }
+        return FilterResult.CONTINUE;
+    }
+}
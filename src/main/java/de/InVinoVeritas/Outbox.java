@@ -0,0 +1,395 @@
+package de.InVinoVeritas;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-ahead journal of the posts to Reddit, so a crash between a submit and recording its result neither loses nor
+ * duplicates a post.
+ * <p>
+ * Every post is journaled as an intent, with everything needed to post it, before it is submitted. Its submission ID,
+ * flair and comments are journaled as they complete. Records are appended to a text file, one per line, and the file
+ * is forced to disk before every submit and at the end of a batch, so one fsync covers all records written since the
+ * last one. Entries still unfinished after a crash are read back at startup and replayed by the bot: an intent without
+ * submission ID is looked up on Reddit before it is submitted again, a post missing its flair or comments gets them.
+ * Every replay is journaled too, so an entry that never finishes is given up on across restarts. The journal is truncated whenever no entry is unfinished.
+ */
+public final class Outbox implements Closeable {
+    // Record types
+    private static final String INTENT = "I";
+    private static final String SUBMITTED = "S";
+    private static final String FLAIRED = "F";
+    private static final String COMMENTED = "C";
+    private static final String DONE = "D";
+    private static final String REPLAYED = "R";
+
+    private static final Logger logger = Logger.getLogger(Outbox.class.getName());
+
+    private final Path path;
+    private final FileChannel channel;
+
+    // Unfinished entries by ID, oldest first
+    private final Map<Long, Entry> unfinished = new LinkedHashMap<>();
+    private long lastId;
+    private boolean dirty;
+
+    private Outbox(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Opens the journal, reading back its unfinished entries. A missing file results in an empty journal.
+     *
+     * @param fileName Name of the journal file
+     * @return Outbox instance
+     * @throws IOException if the journal could not be read or opened
+     */
+    public static Outbox open(String fileName) throws IOException {
+        Path path = Path.of(fileName);
+        byte[] bytes = Files.exists(path) ? Files.readAllBytes(path) : new byte[0];
+        Outbox outbox = new Outbox(path);
+
+        // A last record cut off by a crash is dropped, so the next record starts on a line of its own
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        if (end < bytes.length) {
+            outbox.channel.truncate(end);
+        }
+        for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                outbox.replay(line.split("\t", -1));
+            } catch (RuntimeException e) {
+                logger.warning("Ignoring invalid record in " + fileName + ": " + line);
+            }
+        }
+        if (!outbox.unfinished.isEmpty()) {
+            logger.info("Outbox " + fileName + " holds " + outbox.unfinished.size() + " unfinished post(s).");
+        }
+        return outbox;
+    }
+
+    /**
+     * Journals the intent to post a news. The record is written to disk at the latest by the {@link #sync()} before
+     * its submit.
+     *
+     * @param feed        Name of the feed of the news
+     * @param key         Key of the news in the posted news store
+     * @param subreddit   Target subreddit name
+     * @param url         URL of the news
+     * @param date        Publication date of the news
+     * @param title       Title of the post
+     * @param flairText   Flair text to assign
+     * @param content     Markdown content of the post
+     * @param comments    Markdown content of the comments continuing the post
+     * @param digest      Content digest of the news
+     * @param fingerprint Content fingerprint of the news
+     * @return The journaled entry
+     */
+    public synchronized Entry intent(String feed, String key, String subreddit, String url, String date, String title,
+                                     String flairText, String content, List<String> comments, byte[] digest,
+                                     long fingerprint) {
+        Entry entry = new Entry(++lastId, feed, key, subreddit, url, date, title, flairText, content, comments,
+                digest, fingerprint);
+        unfinished.put(entry.id, entry);
+        append(INTENT, Long.toString(entry.id), feed, key, subreddit, url, date, encode(title), encode(flairText),
+                encode(content), encode(String.join("\0", comments)), HexFormat.of().formatHex(digest),
+                Long.toString(fingerprint), Integer.toString(comments.size()));
+        return entry;
+    }
+
+    /**
+     * Returns the unfinished entries, oldest first.
+     *
+     * @return Copy of the unfinished entries
+     */
+    public synchronized List<Entry> unfinished() {
+        return List.copyOf(unfinished.values());
+    }
+
+    /**
+     * Checks whether an unfinished entry was not submitted yet, i.e. it is unknown whether the news was posted.
+     *
+     * @param key Key of the news in the posted news store
+     * @return true if the news is waiting for recovery
+     */
+    public synchronized boolean isPending(String key) {
+        return unfinished.values().stream().anyMatch(entry -> entry.submissionId == null && entry.key.equals(key));
+    }
+
+    /**
+     * Forces all records written so far to disk, truncating the journal if no entry is unfinished.
+     */
+    public synchronized void sync() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            if (unfinished.isEmpty()) {
+                channel.truncate(0);
+            }
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write outbox " + path, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    private void replay(String[] record) {
+        long id = Long.parseLong(record[1]);
+        lastId = Math.max(lastId, id);
+        if (record[0].equals(INTENT)) {
+            List<String> comments = Integer.parseInt(record[13]) == 0 ? List.of()
+                    : Arrays.asList(decode(record[10]).split("\0", -1));
+            unfinished.put(id, new Entry(id, record[2], record[3], record[4], record[5], record[6], decode(record[7]),
+                    decode(record[8]), decode(record[9]), comments, HexFormat.of().parseHex(record[11]),
+                    Long.parseLong(record[12])));
+            return;
+        }
+        Entry entry = unfinished.get(id);
+        if (entry == null) {
+            return;
+        }
+        switch (record[0]) {
+            case SUBMITTED -> entry.submissionId = record[2];
+            case FLAIRED -> entry.flaired = true;
+            case COMMENTED -> entry.commentsPosted = Integer.parseInt(record[2]);
+            case DONE -> entry.done = true;
+            case REPLAYED -> entry.replays = Integer.parseInt(record[2]);
+            default -> throw new IllegalArgumentException("Unknown record type");
+        }
+        if (entry.isFinished()) {
+            unfinished.remove(id);
+        }
+    }
+
+    private void update(Entry entry, String... record) {
+        try {
+            append(record);
+        } catch (UncheckedIOException e) {
+            // The post already exists, a lost record only makes a recovery check it or post its follow-ups again
+            logger.log(Level.SEVERE, "Failed to journal the progress of a post", e);
+        }
+        if (entry.isFinished()) {
+            unfinished.remove(entry.id);
+        }
+    }
+
+    private void append(String... fields) {
+        ByteBuffer buffer = ByteBuffer.wrap((String.join("\t", fields) + "\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            dirty = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write outbox " + path, e);
+        }
+    }
+
+    private static String encode(String text) {
+        return Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String text) {
+        return new String(Base64.getDecoder().decode(text), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A journaled post and how far it got.
+     */
+    public final class Entry {
+        private final long id;
+        private final String feed;
+        private final String key;
+        private final String subreddit;
+        private final String url;
+        private final String date;
+        private final String title;
+        private final String flairText;
+        private final String content;
+        private final List<String> comments;
+        private final byte[] digest;
+        private final long fingerprint;
+
+        // Progress, guarded by the outbox
+        private String submissionId;
+        private boolean flaired;
+        private int commentsPosted;
+        private boolean done;
+        private int replays;
+
+        private Entry(long id, String feed, String key, String subreddit, String url, String date, String title,
+                      String flairText, String content, List<String> comments, byte[] digest, long fingerprint) {
+            this.id = id;
+            this.feed = feed;
+            this.key = key;
+            this.subreddit = subreddit;
+            this.url = url;
+            this.date = date;
+            this.title = title;
+            this.flairText = flairText;
+            this.content = content;
+            this.comments = List.copyOf(comments);
+            this.digest = digest;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * Forces the journal to disk, to be called right before the submit of this entry.
+         */
+        public void sync() {
+            Outbox.this.sync();
+        }
+
+        /**
+         * Journals the submission of this entry.
+         *
+         * @param submissionId ID of the submission
+         */
+        public void submitted(String submissionId) {
+            synchronized (Outbox.this) {
+                this.submissionId = submissionId;
+                update(this, SUBMITTED, Long.toString(id), submissionId);
+            }
+        }
+
+        /**
+         * Journals that the flair of the post was set.
+         */
+        public void flaired() {
+            synchronized (Outbox.this) {
+                flaired = true;
+                update(this, FLAIRED, Long.toString(id));
+            }
+        }
+
+        /**
+         * Journals that a comment continuing the post was posted.
+         *
+         * @param count Number of comments posted so far
+         */
+        public void commented(int count) {
+            synchronized (Outbox.this) {
+                commentsPosted = count;
+                update(this, COMMENTED, Long.toString(id), Integer.toString(count));
+            }
+        }
+
+        /**
+         * Finishes this entry without completing it, e.g. because it was dropped before its submit or given up on.
+         */
+        public void done() {
+            synchronized (Outbox.this) {
+                done = true;
+                update(this, DONE, Long.toString(id));
+            }
+        }
+
+        /**
+         * Journals that this entry is replayed once more.
+         *
+         * @return Number of replays of this entry, including this one
+         */
+        public int replayed() {
+            synchronized (Outbox.this) {
+                replays++;
+                update(this, REPLAYED, Long.toString(id), Integer.toString(replays));
+                return replays;
+            }
+        }
+
+        private boolean isFinished() {
+            return done || submissionId != null && flaired && commentsPosted >= comments.size();
+        }
+
+        public String feed() {
+            return feed;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public String subreddit() {
+            return subreddit;
+        }
+
+        public String url() {
+            return url;
+        }
+
+        public String date() {
+            return date;
+        }
+
+        public String title() {
+            return title;
+        }
+
+        public String flairText() {
+            return flairText;
+        }
+
+        public String content() {
+            return content;
+        }
+
+        public List<String> comments() {
+            return comments;
+        }
+
+        public byte[] digest() {
+            return digest;
+        }
+
+        public long fingerprint() {
+            return fingerprint;
+        }
+
+        public String submissionId() {
+            synchronized (Outbox.this) {
+                return submissionId;
+            }
+        }
+
+        public boolean isFlaired() {
+            synchronized (Outbox.this) {
+                return flaired;
+            }
+        }
+
+        public int commentsPosted() {
+            synchronized (Outbox.this) {
+                return commentsPosted;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package de.InVinoVeritas;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the HTTP validators (ETag, Last-Modified) and a content digest of the last processed release notes page,
+ * so an unchanged page can be detected before it is parsed again.
+ */
+public class PageCache {
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "last-modified";
+    private static final String KEY_DIGEST = "digest";
+
+    private static final Logger logger = Logger.getLogger(PageCache.class.getName());
+
+    private final File file;
+    private String etag;
+    private String lastModified;
+    private String digest;
+
+    private PageCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the validator cache from the given file. A missing or unreadable file results in an empty cache.
+     *
+     * @param fileName Name of the cache file
+     * @return PageCache instance
+     */
+    public static PageCache load(String fileName) {
+        PageCache cache = new PageCache(new File(fileName));
+        if (!cache.file.exists()) {
+            return cache;
+        }
+
+        Properties props = new Properties();
+        try (Reader in = new InputStreamReader(new FileInputStream(cache.file), StandardCharsets.UTF_8)) {
+            props.load(in);
+            cache.etag = props.getProperty(KEY_ETAG);
+            cache.lastModified = props.getProperty(KEY_LAST_MODIFIED);
+            cache.digest = props.getProperty(KEY_DIGEST);
+        } catch (IOException e) {
+            logger.warning("Error reading page cache file: " + fileName + " - " + e.getMessage());
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the request headers needed for a conditional GET of the cached page.
+     *
+     * @return Map of header names to values, empty if nothing is cached yet
+     */
+    public Map<String, String> getConditionalHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        if (etag != null) {
+            headers.put("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+        return headers;
+    }
+
+    /**
+     * Checks whether a page body with the given digest was already processed.
+     *
+     * @param bodyDigest Digest of the downloaded page body
+     * @return true if the digest matches the cached one
+     */
+    public boolean isUnchanged(String bodyDigest) {
+        return digest != null && digest.equals(bodyDigest);
+    }
+
+    /**
+     * Replaces the cached validators. The change is only persisted by {@link #save()}.
+     *
+     * @param etag         ETag response header, may be null
+     * @param lastModified Last-Modified response header, may be null
+     * @param bodyDigest   Digest of the page body
+     */
+    public void update(String etag, String lastModified, String bodyDigest) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.digest = bodyDigest;
+    }
+
+    /**
+     * Writes the validators to the cache file.
+     */
+    public void save() {
+        Properties props = new Properties();
+        if (etag != null) props.setProperty(KEY_ETAG, etag);
+        if (lastModified != null) props.setProperty(KEY_LAST_MODIFIED, lastModified);
+        if (digest != null) props.setProperty(KEY_DIGEST, digest);
+
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            props.store(out, "Validators of the last processed release notes page");
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to save page cache file: " + file, e);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 digest of a page body.
+     *
+     * @param body Raw page bytes
+     * @return Hex encoded digest
+     */
+    public static String digest(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package de.InVinoVeritas;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of the news already posted, keyed by a 64-bit fingerprint of the news URL.
+ * <p>
+ * The store is a memory-mapped, open-addressing hash table: a fixed header followed by fixed-size slots. Opening it
+ * only maps the file, so startup takes the same time regardless of how many news were posted, and a lookup touches a
+ * few slots at most. Every slot records the Reddit submission ID, a digest of the news content and a cheap fingerprint
+ * of it besides the key. The fingerprint is zero in slots written before it was introduced, meaning unknown.
+ * <p>
+ * Writes go to the mapped memory and survive a crash of the process; {@link #flush()} forces them to disk and is meant
+ * to be called once per batch of posts. When the table gets too full it is rehashed into a larger table, which also
+ * drops removed entries. The new table is written to a temporary file first and then copied over the store file, so a
+ * crash during the copy is recovered from the temporary file by the next {@link #open}. The store file itself is only
+ * ever written and extended, never replaced, as a mapped file stays mapped until its buffer is garbage collected.
+ * <p>
+ * IDs from the old text file ({@code url.hashCode()} values) are imported as legacy entries. A legacy entry that
+ * matches a lookup is replaced by the full fingerprint of that URL.
+ */
+public class PostedNewsStore implements Closeable {
+    // File header
+    private static final int MAGIC = 0x52524253; // "RRBS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_CAPACITY = 8;
+    private static final int OFFSET_COUNT = 12;
+    private static final int OFFSET_REMOVED = 16;
+    private static final int OFFSET_LEGACY = 20;
+
+    // Slot layout
+    private static final int SLOT_SIZE = 64;
+    private static final int SLOT_KEY = 0;
+    private static final int SLOT_FLAGS = 8;
+    private static final int SLOT_ID_LENGTH = 9;
+    private static final int SLOT_ID = 10;
+    private static final int SLOT_DIGEST = 32;
+    private static final int SLOT_POSTED_AT = 48;
+    private static final int SLOT_FINGERPRINT = 56;
+
+    /** Maximum length of a submission ID that can be stored. */
+    public static final int MAX_ID_LENGTH = SLOT_DIGEST - SLOT_ID;
+
+    /** Length of the stored content digest in bytes. */
+    public static final int DIGEST_LENGTH = SLOT_POSTED_AT - SLOT_DIGEST;
+
+    // Slot flags
+    private static final byte FLAG_USED = 1;
+    private static final byte FLAG_LEGACY = 2;
+    private static final byte FLAG_REMOVED = 4;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final Logger logger = Logger.getLogger(PostedNewsStore.class.getName());
+
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+
+    /**
+     * A posted news as recorded in the store.
+     *
+     * @param submissionId       ID of the Reddit submission, empty if unknown (e.g. for imported legacy IDs)
+     * @param contentDigest      Digest of the news content, all zeros if unknown
+     * @param postedAt           Time the news was recorded, in milliseconds since the epoch
+     * @param contentFingerprint Cheap fingerprint of the news content, 0 if unknown
+     */
+    public record Entry(String submissionId, byte[] contentDigest, long postedAt, long contentFingerprint) {
+    }
+
+    private PostedNewsStore(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Opens the store, creating it if it does not exist yet. A new store imports the IDs of the legacy text file if
+     * that file exists, and renames the text file afterward.
+     *
+     * @param fileName       Name of the store file
+     * @param legacyFileName Name of the text file with one {@code url.hashCode()} per line
+     * @return Opened store
+     * @throws IOException if the store cannot be opened or created
+     */
+    public static PostedNewsStore open(String fileName, String legacyFileName) throws IOException {
+        PostedNewsStore store = new PostedNewsStore(Path.of(fileName));
+        store.finishRebuild();
+        if (Files.exists(store.path)) {
+            store.map();
+            logger.info("Opened posted news store with " + store.size() + " entries.");
+            return store;
+        }
+
+        createFile(store.path, INITIAL_CAPACITY);
+        store.map();
+        logger.info("Created posted news store: " + fileName);
+
+        Path legacyPath = Path.of(legacyFileName);
+        if (Files.exists(legacyPath)) {
+            store.importLegacy(legacyPath);
+        }
+        return store;
+    }
+
+    /**
+     * Computes the 64-bit fingerprint of a news URL from its SHA-256 digest.
+     *
+     * @param url URL of the news
+     * @return Non-zero fingerprint
+     */
+    public static long fingerprint(String url) {
+        byte[] digest = sha256(url.getBytes(StandardCharsets.UTF_8));
+        long key = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            key = (key << 8) | (digest[i] & 0xFF);
+        }
+
+        // Zero marks an empty slot
+        return key != 0 ? key : 1;
+    }
+
+    /**
+     * Checks whether the news with the given URL was posted.
+     *
+     * @param url URL of the news
+     * @return true if the news was posted
+     */
+    public synchronized boolean contains(String url) {
+        return get(url) != null;
+    }
+
+    /**
+     * Looks up the entry of a posted news.
+     *
+     * @param url URL of the news
+     * @return Entry of the news, or null if it was not posted
+     */
+    public synchronized Entry get(String url) {
+        int slot = find(fingerprint(url), false);
+        if (slot >= 0) {
+            return readEntry(slot);
+        }
+
+        if (buffer.getInt(OFFSET_LEGACY) > 0) {
+            int legacySlot = find(legacyKey(url.hashCode()), true);
+            if (legacySlot >= 0) {
+                // Replace the collision-prone legacy ID with the full fingerprint
+                Entry entry = readEntry(legacySlot);
+                remove(legacySlot);
+                buffer.putInt(OFFSET_LEGACY, buffer.getInt(OFFSET_LEGACY) - 1);
+                insert(fingerprint(url), (byte) 0, entry);
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records a posted news, replacing an existing entry for the same URL.
+     *
+     * @param url                URL of the news
+     * @param submissionId       ID of the Reddit submission
+     * @param contentDigest      Digest of the news content, at least {@link #DIGEST_LENGTH} bytes
+     * @param contentFingerprint Cheap fingerprint of the news content
+     */
+    public synchronized void put(String url, String submissionId, byte[] contentDigest, long contentFingerprint) {
+        insert(fingerprint(url), (byte) 0,
+                new Entry(submissionId, contentDigest, System.currentTimeMillis(), contentFingerprint));
+    }
+
+    /**
+     * Replaces the entry of a posted news, e.g. after its submission was edited, keeping the given posting time.
+     *
+     * @param url   URL of the news
+     * @param entry New entry of the news
+     */
+    public synchronized void update(String url, Entry entry) {
+        insert(fingerprint(url), (byte) 0, entry);
+    }
+
+    /**
+     * Forces all changes to disk.
+     */
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Returns the number of recorded news, including legacy entries.
+     *
+     * @return Number of entries
+     */
+    public synchronized int size() {
+        return buffer.getInt(OFFSET_COUNT);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Finds the slot holding the given key.
+     *
+     * @return Slot index, or -1 if the key is not in the table
+     */
+    private int find(long key, boolean legacy) {
+        int mask = capacity - 1;
+        for (int slot = indexFor(key) & mask; ; slot = (slot + 1) & mask) {
+            int offset = slotOffset(slot);
+            long slotKey = buffer.getLong(offset + SLOT_KEY);
+            if (slotKey == 0) {
+                return -1;
+            }
+            byte flags = buffer.get(offset + SLOT_FLAGS);
+            if (slotKey == key && (flags & FLAG_REMOVED) == 0 && ((flags & FLAG_LEGACY) != 0) == legacy) {
+                return slot;
+            }
+        }
+    }
+
+    private void insert(long key, byte extraFlags, Entry entry) {
+        int existing = find(key, (extraFlags & FLAG_LEGACY) != 0);
+        if (existing >= 0) {
+            writeSlot(existing, key, extraFlags, entry);
+            return;
+        }
+
+        // Keep the table at most half full, so probe sequences stay short
+        int count = buffer.getInt(OFFSET_COUNT);
+        if ((count + buffer.getInt(OFFSET_REMOVED) + 1) * 2 > capacity) {
+            // Never shrinks, the mapped store file cannot be truncated on every platform
+            rebuild(Math.max(capacity, capacityFor(count + 1)));
+        }
+
+        int mask = capacity - 1;
+        int slot = indexFor(key) & mask;
+        while (buffer.getLong(slotOffset(slot) + SLOT_KEY) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        writeSlot(slot, key, extraFlags, entry);
+        buffer.putInt(OFFSET_COUNT, count + 1);
+    }
+
+    private void writeSlot(int slot, long key, byte extraFlags, Entry entry) {
+        int offset = slotOffset(slot);
+        byte[] id = entry.submissionId().getBytes(StandardCharsets.US_ASCII);
+        int idLength = Math.min(id.length, MAX_ID_LENGTH);
+
+        buffer.put(offset + SLOT_FLAGS, (byte) (FLAG_USED | extraFlags));
+        buffer.put(offset + SLOT_ID_LENGTH, (byte) idLength);
+        buffer.put(offset + SLOT_ID, id, 0, idLength);
+        buffer.put(offset + SLOT_DIGEST, entry.contentDigest(), 0, DIGEST_LENGTH);
+        buffer.putLong(offset + SLOT_POSTED_AT, entry.postedAt());
+        buffer.putLong(offset + SLOT_FINGERPRINT, entry.contentFingerprint());
+
+        // The key is written last, so a torn write leaves an empty slot behind
+        buffer.putLong(offset + SLOT_KEY, key);
+    }
+
+    private Entry readEntry(int slot) {
+        int offset = slotOffset(slot);
+        byte[] id = new byte[buffer.get(offset + SLOT_ID_LENGTH)];
+        buffer.get(offset + SLOT_ID, id);
+        byte[] digest = new byte[DIGEST_LENGTH];
+        buffer.get(offset + SLOT_DIGEST, digest);
+        return new Entry(new String(id, StandardCharsets.US_ASCII), digest, buffer.getLong(offset + SLOT_POSTED_AT),
+                buffer.getLong(offset + SLOT_FINGERPRINT));
+    }
+
+    private void remove(int slot) {
+        // The key stays in place, so probe sequences running across this slot are not cut short
+        int offset = slotOffset(slot);
+        buffer.put(offset + SLOT_FLAGS, (byte) (buffer.get(offset + SLOT_FLAGS) | FLAG_REMOVED));
+        buffer.putInt(OFFSET_COUNT, buffer.getInt(OFFSET_COUNT) - 1);
+        buffer.putInt(OFFSET_REMOVED, buffer.getInt(OFFSET_REMOVED) + 1);
+    }
+
+    /**
+     * Rehashes all live entries into a table with the given capacity and installs it in the store file. Removed
+     * entries are dropped on the way, {@link #insert} counts them towards the fill level that triggers this.
+     */
+    private void rebuild(int newCapacity) {
+        ByteBuffer table = ByteBuffer.allocate(HEADER_SIZE + newCapacity * SLOT_SIZE);
+        int mask = newCapacity - 1;
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = slotOffset(slot);
+            long key = buffer.getLong(offset + SLOT_KEY);
+            if (key != 0 && (buffer.get(offset + SLOT_FLAGS) & FLAG_REMOVED) == 0) {
+                int target = indexFor(key) & mask;
+                while (table.getLong(slotOffset(target) + SLOT_KEY) != 0) {
+                    target = (target + 1) & mask;
+                }
+                table.put(slotOffset(target), buffer, offset, SLOT_SIZE);
+                count++;
+            }
+        }
+        table.putInt(OFFSET_MAGIC, MAGIC);
+        table.putInt(OFFSET_VERSION, VERSION);
+        table.putInt(OFFSET_CAPACITY, newCapacity);
+        table.putInt(OFFSET_COUNT, count);
+        table.putInt(OFFSET_LEGACY, buffer.getInt(OFFSET_LEGACY));
+
+        Path tempPath = tempPath();
+        try {
+            try (FileChannel temp = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeTable(temp, table);
+            }
+
+            // No later write-back of the old mapping may land on the new table. The old buffer stays mapped until it
+            // is garbage collected, it is just no longer used.
+            buffer.force();
+            writeTable(channel, table);
+            channel.close();
+            map();
+            Files.delete(tempPath);
+            logger.info("Rebuilt posted news store with capacity " + newCapacity + ".");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to rebuild posted news store: " + path, e);
+        }
+    }
+
+    /**
+     * Copies a table left in the temporary file by a rebuild that was cut off over the store file. An incomplete
+     * temporary file means the store file was not touched yet, it is just removed.
+     */
+    private void finishRebuild() throws IOException {
+        Path tempPath = tempPath();
+        if (!Files.exists(tempPath)) {
+            return;
+        }
+        ByteBuffer table = ByteBuffer.wrap(Files.readAllBytes(tempPath));
+        if (isTable(table, table.capacity())) {
+            try (FileChannel store = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                writeTable(store, table);
+            }
+            logger.warning("Finished an interrupted rebuild of the posted news store " + path + ".");
+        }
+        Files.delete(tempPath);
+    }
+
+    /**
+     * Writes a table to the start of a file and forces it to disk. The header is written last, so a temporary file cut
+     * off by a crash is never taken for a complete table.
+     */
+    private static void writeTable(FileChannel file, ByteBuffer table) throws IOException {
+        ByteBuffer slots = table.slice(HEADER_SIZE, table.capacity() - HEADER_SIZE);
+        for (long position = HEADER_SIZE; slots.hasRemaining(); ) {
+            position += file.write(slots, position);
+        }
+        file.force(false);
+        ByteBuffer header = table.slice(0, HEADER_SIZE);
+        for (long position = 0; header.hasRemaining(); ) {
+            position += file.write(header, position);
+        }
+        file.force(false);
+    }
+
+    private Path tempPath() {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    private void importLegacy(Path legacyPath) throws IOException {
+        int imported = 0;
+        try (BufferedReader br = Files.newBufferedReader(legacyPath)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                try {
+                    long key = legacyKey(Integer.parseInt(line.trim()));
+                    if (find(key, true) < 0) {
+                        insert(key, FLAG_LEGACY, new Entry("", new byte[DIGEST_LENGTH], System.currentTimeMillis(), 0));
+                        imported++;
+                    }
+                } catch (NumberFormatException e) {
+                    logger.warning("Invalid news ID in posted news file: " + line);
+                }
+            }
+        }
+        buffer.putInt(OFFSET_LEGACY, imported);
+        buffer.force();
+
+        Path migratedPath = legacyPath.resolveSibling(legacyPath.getFileName() + ".migrated");
+        Files.move(legacyPath, migratedPath, StandardCopyOption.REPLACE_EXISTING);
+        logger.info("Imported " + imported + " posted news IDs from " + legacyPath + ", kept it as " + migratedPath + ".");
+    }
+
+    private void map() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_SIZE) {
+            channel.close();
+            throw new IOException("Not a posted news store: " + path);
+        }
+
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        capacity = buffer.getInt(OFFSET_CAPACITY);
+        if (!isTable(buffer, channel.size())) {
+            channel.close();
+            throw new IOException("Not a posted news store or unsupported version: " + path);
+        }
+    }
+
+    /**
+     * Checks whether a buffer holds a complete table of the current version.
+     *
+     * @param size Size of the file the buffer was read from
+     */
+    private static boolean isTable(ByteBuffer table, long size) {
+        if (size < HEADER_SIZE) {
+            return false;
+        }
+        int capacity = table.getInt(OFFSET_CAPACITY);
+        return table.getInt(OFFSET_MAGIC) == MAGIC && table.getInt(OFFSET_VERSION) == VERSION
+                && Integer.bitCount(capacity) == 1 && size == HEADER_SIZE + (long) capacity * SLOT_SIZE;
+    }
+
+    private static void createFile(Path path, int capacity) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(0);
+            file.setLength(HEADER_SIZE + (long) capacity * SLOT_SIZE);
+            file.seek(OFFSET_MAGIC);
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeInt(capacity);
+            file.getFD().sync();
+        }
+    }
+
+    private static int capacityFor(int entries) {
+        // A quarter full after a rebuild, so the next one is far away
+        int newCapacity = INITIAL_CAPACITY;
+        while ((long) entries * 4 > newCapacity) {
+            newCapacity *= 2;
+        }
+        return newCapacity;
+    }
+
+    private static long legacyKey(int legacyId) {
+        // Legacy entries are told apart by their flag, the key just needs to be non-zero
+        return ((long) legacyId << 1) | 1;
+    }
+
+    private static int indexFor(long key) {
+        // Legacy keys are plain String hash codes, so spread the bits before using them as index
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
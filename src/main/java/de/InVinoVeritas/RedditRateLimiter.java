@@ -0,0 +1,132 @@
+package de.InVinoVeritas;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Token bucket fed by Reddit's {@code X-Ratelimit-Remaining} and {@code X-Ratelimit-Reset} response headers.
+ * <p>
+ * Installed as an OkHttp interceptor, it lets requests pass while the current rate limit window has requests left and
+ * holds them back until the window resets otherwise. A 429 response empties the bucket until {@code Retry-After} or
+ * the reset time has passed.
+ * <p>
+ * The wait runs inside the call and counts against its call timeout, so a request is only held back for up to half of
+ * that timeout. If the window resets later, the request fails right away with a {@link RateLimitedException} without
+ * being sent, and the caller waits out the reset outside the call.
+ */
+public class RedditRateLimiter implements Interceptor {
+    private static final Logger logger = Logger.getLogger(RedditRateLimiter.class.getName());
+
+    // Requests left in the current window, NaN while no window is known
+    private double tokens = Double.NaN;
+    private long resetAtNanos;
+
+    /**
+     * Thrown instead of holding a request back for longer than its call timeout allows. The request was not sent.
+     */
+    public static final class RateLimitedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final long waitMillis;
+
+        RateLimitedException(long waitMillis) {
+            super("Reddit rate limit reached, the window resets in " + (waitMillis + 999) / 1000 + " seconds");
+            this.waitMillis = waitMillis;
+        }
+
+        /**
+         * @return Time until the rate limit window resets, in milliseconds
+         */
+        public long getWaitMillis() {
+            return waitMillis;
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        // The rest of the call timeout is left for the request itself
+        long callTimeoutNanos = chain.call().timeout().timeoutNanos();
+        acquire(callTimeoutNanos > 0 ? TimeUnit.NANOSECONDS.toMillis(callTimeoutNanos) / 2 : Long.MAX_VALUE);
+        Response response = chain.proceed(chain.request());
+        update(response);
+        return response;
+    }
+
+    /**
+     * Takes a token, waiting for the rate limit window to reset if none are left.
+     *
+     * @param maxWaitMillis Longest time to wait in total
+     * @throws RateLimitedException   if the window resets later than the longest time to wait
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    synchronized void acquire(long maxWaitMillis) throws IOException {
+        long startNanos = System.nanoTime();
+        while (true) {
+            long now = System.nanoTime();
+            if (Double.isNaN(tokens) || now - resetAtNanos >= 0) {
+                // No window known or the window is over, the next response tells the new state
+                tokens = Double.NaN;
+                return;
+            }
+            if (tokens >= 1) {
+                tokens--;
+                return;
+            }
+
+            long waitMillis = TimeUnit.NANOSECONDS.toMillis(resetAtNanos - now) + 1;
+            if (waitMillis > maxWaitMillis - TimeUnit.NANOSECONDS.toMillis(now - startNanos)) {
+                throw new RateLimitedException(waitMillis);
+            }
+            Metrics.Counter.RATE_LIMIT_WAITS.increment();
+            logger.info("Reddit rate limit reached, waiting " + (waitMillis + 999) / 1000 + " seconds.");
+            try {
+                wait(waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the Reddit rate limit");
+            }
+        }
+    }
+
+    /**
+     * Updates the bucket from the rate limit headers of a response.
+     *
+     * @param response Response of the Reddit API
+     */
+    synchronized void update(Response response) {
+        long now = System.nanoTime();
+        Double remaining = parseSeconds(response.header("X-Ratelimit-Remaining"));
+        Double reset = parseSeconds(response.header("X-Ratelimit-Reset"));
+        if (remaining != null && reset != null) {
+            tokens = Math.floor(remaining);
+            resetAtNanos = now + (long) (reset * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        if (response.code() == 429) {
+            tokens = 0;
+            Double retryAfter = parseSeconds(response.header("Retry-After"));
+            if (retryAfter != null) {
+                resetAtNanos = Math.max(resetAtNanos, now + (long) (retryAfter * TimeUnit.SECONDS.toNanos(1)));
+            } else if (reset == null) {
+                resetAtNanos = now + TimeUnit.SECONDS.toNanos(1);
+            }
+        }
+        notifyAll();
+    }
+
+    private static Double parseSeconds(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -3,32 +3,149 @@ package de.InVinoVeritas;
 import net.dean.jraw.RedditClient;
 import net.dean.jraw.http.OkHttpNetworkAdapter;
 import net.dean.jraw.http.UserAgent;
-import net.dean.jraw.models.SubmissionKind;
 import net.dean.jraw.oauth.Credentials;
+import net.dean.jraw.oauth.NoopTokenStore;
+import net.dean.jraw.oauth.OAuthData;
 import net.dean.jraw.oauth.OAuthHelper;
-import net.dean.jraw.references.SubmissionReference;
+import net.dean.jraw.oauth.TokenStore;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 import org.jetbrains.annotations.NotNull;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
 
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.logging.*;
 
 /**
- * RyzomRedditBot fetches release notes from a specified website and posts new updates to a Reddit subreddit.
+ * RyzomRedditBot fetches release notes from one or more release notes pages and posts new updates to Reddit subreddits.
  */
 public class RyzomRedditBot {
-    // URL of the website containing release notes
-    private static final String URL = "https://app.ryzom.com/app_releasenotes/index.php?lang=en&ig=1";
+    static {
+        // Before any logger is created, so the shutdown hook can still log, unless another log manager was chosen
+        if (System.getProperty("java.util.logging.manager") == null) {
+            System.setProperty("java.util.logging.manager", ShutdownLogManager.class.getName());
+        }
+    }
 
-    // File to keep track of posted news IDs
+    // Former file to keep track of posted news IDs, migrated into the posted news store
     private static final String POSTED_FILE = "posted_news.txt";
 
-    // Set to store IDs of news already posted
-    private static final Set<Integer> postedNewsIds = new HashSet<>();
+    // File to keep the validators of the last processed release notes page
+    private static final String PAGE_CACHE_FILE = "page_cache.properties";
+
+    // File storing the fingerprints of news already posted
+    private static final String POSTED_STORE_FILE = "posted_news.db";
+
+    // Write-ahead journal of the posts to Reddit, so a crash does not lose or duplicate a post
+    private static final String OUTBOX_FILE = "outbox.log";
+
+    // File keeping the Reddit access token across runs, readable by the owner only
+    private static final String TOKEN_FILE = "reddit_token.properties";
+
+    // A stored token is only reused, and a token is renewed in the background, this long before it expires
+    private static final long TOKEN_REFRESH_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    // Delay before a failed background renewal is tried again
+    private static final long TOKEN_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // Store of news already posted
+    private static PostedNewsStore postedNews;
+
+    // Journal of the posts in progress
+    private static Outbox outbox;
+
+    // Leases of the feeds polled by this instance, null if the instance runs alone
+    private static Coordinator coordinator;
+
+    // Precompiled selectors for parsing the release notes page
+    private static final Evaluator MAIN_TABLE = QueryParser.parse("table[style*=margin: 0 auto]");
+    private static final Evaluator ROW = QueryParser.parse("tr");
+    private static final Evaluator CELL = QueryParser.parse("td");
+    private static final Evaluator TABLE = QueryParser.parse("table");
+    private static final Evaluator BOLD = QueryParser.parse("b");
+    private static final Evaluator HEADLINE_CELL = QueryParser.parse("td[style*=border-bottom]");
+
+    // Log file, rotated daily and when it reaches LOG_LIMIT_BYTES, keeping LOG_FILE_COUNT old files
+    private static final String LOG_FILE = "app.log";
+    private static final long LOG_LIMIT_BYTES = 10L * 1024 * 1024;
+    private static final int LOG_FILE_COUNT = 7;
+
+    // Log records buffered for the log writer thread
+    private static final int LOG_QUEUE_CAPACITY = 8192;
+
+    // Reddit archives posts after six months, they cannot be edited anymore
+    private static final long EDITABLE_MILLIS = TimeUnit.DAYS.toMillis(180);
+
+    // Seconds a running poll may take to finish when the daemon shuts down
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 60;
+
+    // Limits the concurrent page fetches per host
+    private static final Map<String, Semaphore> hostLimits = new ConcurrentHashMap<>();
+
+    // Identifies the bot to the release notes website
+    private static final String WEB_USER_AGENT = "Mozilla/5.0 (compatible; RyzomRedditBot/1.0)";
+
+    // HTTP client shared by page fetches, image prefetches and the Reddit API
+    private static OkHttpClient httpClient;
+
+    // Rate limit shared by all Reddit clients, fed by the API response headers
+    private static final RedditRateLimiter rateLimiter = new RedditRateLimiter();
+
+    // Cache of prefetched news images, null if prefetching is disabled
+    private static ImageCache imageCache;
+
+    // Queue of news to post, drained in order
+    private static SubmissionScheduler submissionScheduler;
+
+    // Finds news already posted to a subreddit though missing from the posted news store, null if disabled
+    private static DuplicateGuard duplicateGuard;
+
+    // Publishes news to the channels besides Reddit, null if none is configured
+    private static SinkDispatcher sinkDispatcher;
+
+    // Reddit client, kept across polls in daemon mode
+    private static volatile RedditClient redditClient;
+
+    // Configuration the Reddit client logged in with
+    private static Config redditClientConfig;
+
+    // Reloads the configuration when its file changes in daemon mode, null otherwise
+    private static ConfigWatcher configWatcher;
+
+    // Renews the access token of the Reddit client before it expires, so posting never waits for a login
+    private static final ScheduledExecutorService tokenRefresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "RyzomRedditBot-token");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Set when Reddit rejected the access token, e.g. after a password change, so it is renewed before the next post
+    private static volatile boolean tokenRejected;
 
     // Logger for logging information and errors
     private static final Logger logger = Logger.getLogger(RyzomRedditBot.class.getName());
@@ -36,9 +153,10 @@ public class RyzomRedditBot {
     /**
      * Main method to execute the bot.
      *
-     * @param args command-line arguments (not used)
+     * @param args command-line arguments, {@code --daemon} keeps the bot running and polls periodically,
+     *             {@code --backfill} posts the archive of older news once
      */
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws IOException, InterruptedException {
         setupLogging();
 
         logger.info("Starting RyzomRedditBot in " + System.getProperty("user.dir") + "...");
@@ -46,128 +164,767 @@ public class RyzomRedditBot {
         // Export configuration file if it doesn't exist
         exportConfigIfNotExists();
 
-        // Load previously posted news IDs to avoid duplicates
-        loadPostedNews();
-
         // Load configuration parameters
         Config config = new Config();
+        if (config.isCoordination()) {
+            coordinator = new Coordinator(Path.of("."), config.getInstanceId(), config.getShards(), config.getPollInterval());
+            logger.info("Coordinating with other instances as '" + config.getInstanceId() + "' over " +
+                    config.getShards() + " shard(s).");
+        }
+
+        // Open the store of previously posted news to avoid duplicates
+        if (coordinator == null) {
+            postedNews = PostedNewsStore.open(POSTED_STORE_FILE, POSTED_FILE);
+            outbox = Outbox.open(OUTBOX_FILE);
+        } else {
+            coordinator.withStoreLock(() -> {
+                postedNews = PostedNewsStore.open(POSTED_STORE_FILE, POSTED_FILE);
+                outbox = Outbox.open(OUTBOX_FILE);
+                return null;
+            });
+        }
+        submissionScheduler = new SubmissionScheduler(config.getMaxAttempts(), config.getDuplicatePages());
+        httpClient = HttpClients.create(config);
+        if (config.isImagePrefetch()) {
+            imageCache = ImageCache.open(config.getImageCacheDir(),
+                    config.getImageCacheMaxMegabytes() * 1024L * 1024L, config.getMaxParallelImages(), httpClient);
+        }
+        sinkDispatcher = createSinkDispatcher(config);
+        if (config.isDuplicateGuard()) {
+            duplicateGuard = new DuplicateGuard(TimeUnit.SECONDS.toMillis(config.getDuplicateCacheSeconds()),
+                    config.getDuplicatePages());
+        }
+        if (config.getMetricsPort() > 0) {
+            InetSocketAddress address = Metrics.serve(config.getMetricsHost(), config.getMetricsPort()).getAddress();
+            logger.info("Serving metrics at http://" + address.getHostString() + ":" + address.getPort() + "/metrics");
+        }
         logger.info("Using username '" + config.getRedditUsername() + "', client id '" + config.getClientId() +
-                "' and subreddit '" + config.getSubreddit() + "' from the config.");
+                "' and " + config.getFeeds().size() + " feed(s) from the config.");
+        for (Config.Feed feed : config.getFeeds()) {
+            logger.info("Feed '" + feed.name() + "': " + feed.url() + " -> r/" + String.join(", r/", feed.subreddits()));
+        }
 
-        // Initialize Reddit client with credentials
-        RedditClient reddit = createRedditClient(config);
-        logger.info("Reddit client initialized.");
+        if (Arrays.asList(args).contains("--backfill")) {
+            backfill(config);
+        } else if (config.isDaemon() || Arrays.asList(args).contains("--daemon")) {
+            runDaemon(config);
+            return;
+        } else {
+            poll(config);
+        }
+
+        closeSinks();
+        logger.info("RyzomRedditBot finished.");
+
+        // Cleanup resources
+        postedNews.close();
+        outbox.close();
+        if (coordinator != null) {
+            coordinator.close();
+        }
+        closeLogHandlers();
 
-        // Fetch and parse the release notes webpage
-        Document doc = Jsoup.connect(URL).get();
-        logger.info("Fetched website content.");
+        // Force JVM shutdown
+        System.exit(0);
+    }
 
-        // Extract news items from HTML
-        List<NewsItem> newsItems = fetchNewsFromHtml(doc);
-        logger.info("Found " + newsItems.size() + " news entries.");
+    /**
+     * Keeps the bot running and polls the release notes at the configured interval until the JVM is shut down.
+     *
+     * @param config Configuration parameters
+     */
+    private static void runDaemon(Config config) {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> new Thread(r, "RyzomRedditBot-poller"));
+        // The next poll is a delayed task, it must not delay the shutdown
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        try {
+            configWatcher = new ConfigWatcher(Path.of(Config.CONFIG_FILE), config, RyzomRedditBot::configReloaded);
+            logger.info("Watching " + Config.CONFIG_FILE + " for changes.");
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to watch " + Config.CONFIG_FILE + ", changes need a restart", e);
+        }
+
+        Supplier<Config> currentConfig = configWatcher != null ? configWatcher::current : () -> config;
+        schedulePoll(scheduler, currentConfig, 0);
+        logger.info("Running as daemon, polling every " + config.getPollInterval() + " seconds.");
+
+        // Let a running poll finish before the JVM exits. The log handlers stay open until the end of the hook, see
+        // ShutdownLogManager.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            logger.info("Shutting down RyzomRedditBot...");
+            scheduler.shutdown();
+            try {
+                if (!scheduler.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    logger.warning("Poll still running after " + SHUTDOWN_TIMEOUT_SECONDS + " seconds, stopping anyway.");
+                }
+                closeSinks();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            logger.info("RyzomRedditBot finished.");
+            try {
+                if (configWatcher != null) {
+                    configWatcher.close();
+                }
+                postedNews.close();
+                outbox.close();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to close posted news store", e);
+            }
+            if (coordinator != null) {
+                coordinator.close();
+            }
+            closeLogHandlers();
+        }, "RyzomRedditBot-shutdown"));
+    }
+
+    /**
+     * Schedules the next poll. Each poll runs with the configuration current when it starts, and the configuration
+     * current when it ends sets the delay to the next one.
+     *
+     * @param scheduler     Executor running the polls
+     * @param currentConfig Supplies the current configuration
+     * @param delaySeconds  Seconds until the poll
+     */
+    private static void schedulePoll(ScheduledExecutorService scheduler, Supplier<Config> currentConfig,
+                                     int delaySeconds) {
+        try {
+            scheduler.schedule(() -> {
+                try {
+                    poll(currentConfig.get());
+                } catch (Exception e) {
+                    // The poll must not keep the next one from being scheduled
+                    logger.log(Level.SEVERE, "Poll failed", e);
+                }
+                schedulePoll(scheduler, currentConfig, currentConfig.get().getPollInterval());
+            }, delaySeconds, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    /**
+     * Logs a reloaded configuration. The Reddit client is rebuilt with the next post if the login changed, settings
+     * that are only applied at startup keep their old values.
+     *
+     * @param previous Configuration before the reload
+     * @param loaded   Reloaded configuration
+     */
+    private static void configReloaded(Config previous, Config loaded) {
+        for (Config.Feed feed : loaded.getFeeds()) {
+            logger.info("Feed '" + feed.name() + "': " + feed.url() + " -> r/" + String.join(", r/", feed.subreddits()));
+        }
+        if (!previous.hasSameRedditLogin(loaded)) {
+            logger.info("Reddit login changed, logging in again before the next post.");
+        }
+        if (!previous.getStartupSettings().equals(loaded.getStartupSettings())) {
+            logger.warning("Some changed settings only apply after a restart, e.g. timeouts, coordination and images.");
+        }
+    }
+
+    /**
+     * Fetches all release notes feeds once and posts all news that were not posted yet.
+     *
+     * @param config Configuration parameters
+     * @throws InterruptedException if interrupted while waiting for the feeds
+     */
+    private static void poll(Config config) throws InterruptedException {
+        Metrics.PollSample pollSample = Metrics.startPoll();
+        try {
+            // Only poll the feeds this instance holds the lease of
+            List<Config.Feed> feeds = config.getFeeds();
+            if (coordinator != null) {
+                Set<Integer> shards = coordinator.refresh();
+                feeds = feeds.stream().filter(feed -> shards.contains(coordinator.shardOf(feed))).toList();
+                if (feeds.isEmpty()) {
+                    logger.info("Standing by, other instances hold the leases of all feeds.");
+                    return;
+                }
+            }
+            replayOutbox(config, feeds);
+
+            // Fetch and parse all feeds concurrently, posting happens in order afterward through the shared client
+            List<Future<FeedUpdate>> futures = new ArrayList<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (Config.Feed feed : feeds) {
+                    futures.add(executor.submit(() -> fetchFeed(config, feed)));
+                }
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                Config.Feed feed = feeds.get(i);
+                FeedUpdate update;
+                try {
+                    update = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    logger.log(Level.SEVERE, "Failed to fetch feed '" + feed.name() + "'", e.getCause());
+                    continue;
+                }
+                if (update != null) {
+                    withStore("feed '" + feed.name() + "'", () -> {
+                        postFeedUpdate(config, update);
+                        return true;
+                    });
+                }
+            }
+        } finally {
+            pollSample.stop();
+        }
+    }
+
+    /**
+     * Posts the archive of older news of every feed, oldest first, resuming a previous backfill.
+     *
+     * @param config Configuration parameters
+     * @throws InterruptedException if interrupted while waiting for a page
+     */
+    private static void backfill(Config config) throws InterruptedException {
+        List<Config.Feed> feeds = config.getFeeds();
+        if (coordinator != null) {
+            Set<Integer> shards = coordinator.refresh();
+            feeds = feeds.stream().filter(feed -> shards.contains(coordinator.shardOf(feed))).toList();
+        }
+        replayOutbox(config, feeds);
+
+        for (Config.Feed feed : feeds) {
+            Backfill backfill = new Backfill(feed, RyzomRedditBot::fetchPage, config.getBackfillPageParameter(),
+                    config.getBackfillMaxPages(), config.getBackfillParallel(), backfillCheckpointFile(feed));
+            try {
+                boolean complete = backfill.run(url -> isPosted(config, feed, url), news -> withStore("feed '" + feed.name() + "'", () -> {
+                    Function<NewsItem, RenderedNews> renderer = renderOnce();
+                    boolean allPosted = true;
+                    for (String subreddit : feed.subreddits()) {
+                        List<NewsItem> newNews = news.stream()
+                                .filter(item -> !postedNews.contains(stateKey(config, feed, subreddit, item.url)))
+                                .toList();
+                        Metrics.Counter.ITEMS_NEW.add(newNews.size());
+                        if (!newNews.isEmpty() && !postNews(config, feed, subreddit, newNews, List.of(), renderer)) {
+                            allPosted = false;
+                        }
+                    }
+                    return allPosted;
+                }));
+                if (complete) {
+                    logger.info("Backfill of feed '" + feed.name() + "' complete.");
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to backfill feed '" + feed.name() + "', run again to resume", e);
+            }
+        }
+    }
+
+    /**
+     * Runs an update of the posted news store. When coordinating with other instances, the store and the outbox are
+     * locked and reopened first, as another instance may have changed or rebuilt them since they were opened.
+     *
+     * @param what   What the update is for, for the log
+     * @param update Posts news and records them in the store, returning true on success
+     * @return The result of the update, false if the store could not be opened
+     */
+    private static boolean withStore(String what, BooleanSupplier update) {
+        if (coordinator == null) {
+            return update.getAsBoolean();
+        }
+        try {
+            return coordinator.withStoreLock(() -> {
+                postedNews.close();
+                postedNews = PostedNewsStore.open(POSTED_STORE_FILE, POSTED_FILE);
+                outbox.close();
+                outbox = Outbox.open(OUTBOX_FILE);
+                return update.getAsBoolean();
+            });
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to open the posted news store for " + what, e);
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether a news was posted to all subreddits of its feed.
+     *
+     * @param config Configuration parameters
+     * @param feed   Feed the news belongs to
+     * @param url    URL of the news
+     * @return true if no subreddit is missing the news
+     */
+    private static boolean isPosted(Config config, Config.Feed feed, String url) {
+        return feed.subreddits().stream()
+                .allMatch(subreddit -> postedNews.contains(stateKey(config, feed, subreddit, url)));
+    }
+
+    /**
+     * Checks whether a news was posted to all subreddits of its feed and delivered to all sinks.
+     *
+     * @param config Configuration parameters
+     * @param feed   Feed the news belongs to
+     * @param url    URL of the news
+     * @return true if no subreddit or sink is missing the news
+     */
+    private static boolean isPublished(Config config, Config.Feed feed, String url) {
+        return isPosted(config, feed, url)
+                && (sinkDispatcher == null || sinkDispatcher.isDelivered(feed.name(), url, postedNews::contains));
+    }
+
+    /**
+     * Fetches and parses a release notes feed.
+     *
+     * @param config Configuration parameters
+     * @param feed   Feed to fetch
+     * @return News of the feed, or null if the page has not changed since it was last processed
+     * @throws IOException          if the release notes could not be fetched
+     * @throws InterruptedException if interrupted while waiting for a fetch slot of the host
+     */
+    private static FeedUpdate fetchFeed(Config config, Config.Feed feed) throws IOException, InterruptedException {
+        // Fetch the release notes webpage, unless it is unchanged since the last run
+        PageCache pageCache = PageCache.load(pageCacheFile(feed));
+        Semaphore hostLimit = hostLimits.computeIfAbsent(URI.create(feed.url()).getHost(),
+                host -> new Semaphore(config.getMaxFetchesPerHost()));
+
+        Document doc;
+        hostLimit.acquire();
+        Metrics.Sample fetchSample = Metrics.start(Metrics.Stage.FETCH);
+        try {
+            doc = fetchReleaseNotes(feed.url(), pageCache);
+        } finally {
+            fetchSample.stop();
+            hostLimit.release();
+        }
+
+        if (doc == null) {
+            logger.info("Release notes of feed '" + feed.name() + "' unchanged since last run.");
+            return null;
+        }
+
+        // Extract news items from HTML, in incremental mode only up to the first one posted to every subreddit, or with
+        // edit detection up to the first one past the edit depth
+        int editDepth = config.isEditDetection() ? config.getEditDepth() : 0;
+        AtomicInteger postedSeen = new AtomicInteger();
+        Predicate<String> isPosted = url -> isPublished(config, feed, url);
+        Predicate<String> stopAt = url -> isPosted.test(url) && postedSeen.incrementAndGet() > editDepth;
+        Metrics.Sample parseSample = Metrics.start(Metrics.Stage.PARSE);
+        List<NewsItem> newsItems = fetchNewsFromHtml(doc, config.isIncrementalParsing() ? stopAt : null);
+        parseSample.stop();
+        Metrics.Counter.ITEMS_SEEN.add(newsItems.size());
+        logger.info("Found " + newsItems.size() + (config.isIncrementalParsing() ? " new or recent" : "") +
+                " news entries in feed '" + feed.name() + "'.");
+
+        // Fetch the images of news to post in the background while the news are rendered and posted
+        if (imageCache != null) {
+            for (NewsItem news : newsItems) {
+                if (news.imageUrl != null && !news.imageUrl.trim().isEmpty() && !isPosted.test(news.url)) {
+                    imageCache.prefetch(news.imageUrl);
+                }
+            }
+        }
 
         // Oldest news items should be posted first
         Collections.reverse(newsItems);
+        return new FeedUpdate(feed, pageCache, newsItems);
+    }
 
-        // Iterate through each news item
-        for (NewsItem news : newsItems) {
-            // Check if this news has already been posted
-            if (!postedNewsIds.contains(news.hashCode())) {
-                try {
-                    // Generate the Markdown content for the news
-                    String content = generateNewsMarkdown(news);
+    /**
+     * Posts the news of a feed to all of its subreddits.
+     *
+     * @param config Configuration parameters
+     * @param update News of the feed, oldest first
+     */
+    private static void postFeedUpdate(Config config, FeedUpdate update) {
+        recordSinkDeliveries();
+
+        // Each news is rendered at most once, for all subreddits and sinks
+        Function<NewsItem, RenderedNews> renderer = renderOnce();
+        boolean allPosted = true;
+
+        for (String subreddit : update.feed().subreddits()) {
+            List<NewsItem> newNews = new ArrayList<>();
+            List<ChangedNews> changedNews = new ArrayList<>();
+            for (NewsItem news : update.newsItems()) {
+                // Check if this news has already been posted, and if so whether it changed since
+                String key = stateKey(config, update.feed(), subreddit, news.url);
+                PostedNewsStore.Entry posted = postedNews.get(key);
+                if (posted == null) {
+                    newNews.add(news);
+                } else if (config.isEditDetection() && isChanged(postedNews, key, news, posted)) {
+                    changedNews.add(new ChangedNews(news, posted));
+                } else {
+                    logger.info("News already posted to r/" + subreddit + ": " + news.url);
+                }
+            }
 
-                    // Post the news to Reddit
-                    postToReddit(reddit, news, content, config.getSubreddit(), "Release Note");
+            Metrics.Counter.ITEMS_NEW.add(newNews.size());
+            if ((!newNews.isEmpty() || !changedNews.isEmpty())
+                    && !postNews(config, update.feed(), subreddit, newNews, changedNews, renderer)) {
+                allPosted = false;
+            }
+        }
 
-                    // Record the posted news ID
-                    savePostedNews(news.hashCode());
-                    logger.info("Posted news ID: " + news.hashCode());
+        // Hand the news over to the sinks, which publish them in the background
+        if (sinkDispatcher != null) {
+            for (NewsItem news : update.newsItems()) {
+                if (sinkDispatcher.isDelivered(update.feed().name(), news.url, postedNews::contains)) {
+                    continue;
+                }
+                allPosted = false;
+                try {
+                    sinkDispatcher.dispatch(update.feed().name(), renderer.apply(news), postedNews::contains);
                 } catch (Exception e) {
-                    logger.log(Level.SEVERE, "Error processing news: " + news.hashCode(), e);
+                    logger.log(Level.SEVERE, "Error rendering news for sinks: " + news.url, e);
                 }
-            } else {
-                logger.info("News ID already posted: " + news.hashCode());
             }
         }
 
-        logger.info("RyzomRedditBot finished.");
+        // Only remember the page once everything on it was handled, so failed posts are retried next run. While a news
+        // is still on its way to a sink, the page is fetched again next run to record the delivery or offer it again.
+        if (allPosted) {
+            Metrics.Sample persistSample = Metrics.start(Metrics.Stage.PERSIST);
+            update.pageCache().save();
+            persistSample.stop();
+        }
+    }
 
-        // Cleanup resources
-        for (Handler handler : Logger.getLogger("").getHandlers()) {
-            handler.close();
+    /**
+     * Checks whether a posted news changed since it was posted. The digest of the news is only computed if its cheap
+     * fingerprint differs from the recorded one. A news recorded without digest or submission ID cannot be compared or
+     * edited, and an archived post cannot be edited either, so then the current content is just recorded.
+     *
+     * @param store  The posted news store
+     * @param key    Key of the news in the posted news store
+     * @param news   The news item as currently published
+     * @param posted Entry of the news in the posted news store
+     * @return true if the submission of the news should be edited
+     */
+    static boolean isChanged(PostedNewsStore store, String key, NewsItem news, PostedNewsStore.Entry posted) {
+        long fingerprint = news.contentFingerprint();
+        if (posted.contentFingerprint() == fingerprint) {
+            return false;
         }
 
-        // Force JVM shutdown
-        System.exit(0);
+        byte[] digest = news.contentDigest();
+        if (posted.submissionId().isEmpty() || Arrays.equals(digest, posted.contentDigest())
+                || Arrays.equals(posted.contentDigest(), new byte[PostedNewsStore.DIGEST_LENGTH])
+                || posted.postedAt() < System.currentTimeMillis() - EDITABLE_MILLIS) {
+            // Remember the fingerprint, so the digest is not computed again next time
+            store.update(key, new PostedNewsStore.Entry(posted.submissionId(), digest, posted.postedAt(), fingerprint));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Posts the given news items in order and edits the posts of changed news, logging in to Reddit first if needed.
+     *
+     * @param config      Configuration containing credentials
+     * @param feed        Feed the news items belong to
+     * @param subreddit   Target subreddit name
+     * @param newsItems   News items to post, oldest first
+     * @param changedNews Posted news items that changed since
+     * @param renderer    Renders a news, shared by the subreddits of a feed so each news is rendered once
+     * @return true if all news items were posted and edited
+     */
+    private static boolean postNews(Config config, Config.Feed feed, String subreddit, List<NewsItem> newsItems,
+                                    List<ChangedNews> changedNews, Function<NewsItem, RenderedNews> renderer) {
+        RedditClient reddit = getRedditClient(config);
+
+        // News are posted as soon as they are queued, while the following ones are still rendered
+        SubmissionScheduler.Batch batch = submissionScheduler.begin(reddit,
+                () -> coordinator == null || coordinator.isHeld(coordinator.shardOf(feed)));
+        boolean allRendered = true;
+
+        // Queue the edits first, they do not depend on each other or on the new posts
+        for (ChangedNews changed : changedNews) {
+            NewsItem news = changed.news();
+            try {
+                List<String> parts = renderer.apply(news).markdown();
+                if (parts.size() > 1) {
+                    logger.warning("Changed news is continued in comments, only its submission is updated: " + news.url);
+                }
+
+                // The new content is recorded once the edit succeeded
+                String key = stateKey(config, feed, subreddit, news.url);
+                PostedNewsStore.Entry updated = new PostedNewsStore.Entry(changed.posted().submissionId(),
+                        news.contentDigest(), changed.posted().postedAt(), news.contentFingerprint());
+                batch.enqueue(new SubmissionScheduler.EditJob(updated.submissionId(), parts.getFirst(), () -> {
+                    postedNews.update(key, updated);
+                    Metrics.Counter.ITEMS_EDITED.increment();
+                    logger.info("Updated changed news on r/" + subreddit + ": " + news.url);
+                }));
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Error processing changed news: " + news.url, e);
+                Metrics.Counter.ITEMS_FAILED.increment();
+                allRendered = false;
+            }
+        }
+
+        // Queue each news item
+        for (NewsItem news : newsItems) {
+            try {
+                // A news whose post may have been cut off by a crash waits for the outbox to be replayed
+                String key = stateKey(config, feed, subreddit, news.url);
+                if (outbox.isPending(key)) {
+                    logger.warning("News waits for the outbox to be replayed, posting it later: " + news.url);
+                    allRendered = false;
+                    break;
+                }
+
+                // A news posted before but missing from the store, e.g. after the store was lost, is only recorded
+                String earlierPost = duplicateGuard != null ? duplicateGuard.findPost(reddit, subreddit, news) : null;
+                if (earlierPost != null) {
+                    postedNews.put(key, earlierPost, news.contentDigest(), news.contentFingerprint());
+                    Metrics.Counter.DUPLICATES.increment();
+                    logger.warning("News already posted to r/" + subreddit + " as " + earlierPost +
+                            ", recording it instead of posting it again: " + news.url);
+                    continue;
+                }
+                RenderedNews rendered = renderer.apply(news);
+
+                // Queue the news for posting, it is recorded as soon as the submission exists
+                if (!postToReddit(batch, feed, key, rendered, subreddit, submissionId -> {
+                    postedNews.put(key, submissionId, news.contentDigest(), news.contentFingerprint());
+                    Metrics.posted();
+                    logger.info("Posted news to r/" + subreddit + ": " + news.url);
+                })) {
+                    // A submit failed, the remaining news are left for the next poll
+                    break;
+                }
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Error processing news: " + news.url, e);
+                Metrics.Counter.ITEMS_FAILED.increment();
+                allRendered = false;
+
+                // Stop here, newer news must not be posted before this one is
+                break;
+            }
+        }
+
+        // Wait for the queue to be posted as fast as the rate limit allows, then make the whole batch durable at once
+        boolean allPosted = batch.finish() && allRendered;
+        persist();
+        return allPosted;
+    }
+
+    /**
+     * Renders a news for Reddit and the sinks.
+     *
+     * @param news The news item
+     * @return The rendered news
+     */
+    private static RenderedNews render(NewsItem news) {
+        // A missing image is only known if its prefetch already finished, posting never waits for it
+        boolean imageLink = imageCache == null || !imageCache.isMissing(news.imageUrl);
+
+        Metrics.Sample renderSample = Metrics.start(Metrics.Stage.RENDER);
+        try {
+            return new RenderedNews(news, MarkdownRenderer.title(news), MarkdownRenderer.render(news, imageLink),
+                    sinkDispatcher != null ? MarkdownRenderer.text(news) : "");
+        } finally {
+            renderSample.stop();
+        }
+    }
+
+    /**
+     * Returns a renderer that renders each news once and then returns the same result, for one poll of a feed.
+     *
+     * @return Caching renderer
+     */
+    private static Function<NewsItem, RenderedNews> renderOnce() {
+        Map<String, RenderedNews> rendered = new HashMap<>();
+        return news -> rendered.computeIfAbsent(news.url, url -> render(news));
+    }
+
+    /**
+     * Creates the dispatcher of the configured sinks. Every HTTP sink gets a client of its own with the sink timeout,
+     * sharing the connection pool of the other clients.
+     *
+     * @param config Configuration parameters
+     * @return Dispatcher, or null if no sink is configured
+     */
+    private static SinkDispatcher createSinkDispatcher(Config config) {
+        List<Sink> sinks = new ArrayList<>();
+        if (!config.getDiscordWebhook().isEmpty()) {
+            sinks.add(new DiscordSink(config.getDiscordWebhook(), sinkHttpClient(config)));
+        }
+        if (!config.getMastodonUrl().isEmpty()) {
+            sinks.add(new MastodonSink(config.getMastodonUrl(), config.getMastodonToken(), sinkHttpClient(config)));
+        }
+        if (!config.getFeedFile().isEmpty()) {
+            String link = config.getFeeds().getFirst().url();
+            sinks.add(new FeedFileSink(Path.of(config.getFeedFile()), config.getFeedTitle(), link,
+                    config.getFeedEntries()));
+        }
+        if (sinks.isEmpty()) {
+            return null;
+        }
+        logger.info("Publishing news to sink(s) " + sinks.stream().map(Sink::name).toList() + " as well.");
+        return new SinkDispatcher(sinks, config.getSinkQueue(), config.getSinkMaxAttempts());
+    }
+
+    private static OkHttpClient sinkHttpClient(Config config) {
+        // A webhook call sent again on a new connection could post twice, the sinks decide on retries
+        return httpClient.newBuilder()
+                .callTimeout(config.getSinkTimeoutSeconds(), TimeUnit.SECONDS)
+                .retryOnConnectionFailure(false)
+                .build();
+    }
+
+    /**
+     * Records the news the sinks delivered since the last call in the posted news store.
+     */
+    private static void recordSinkDeliveries() {
+        if (sinkDispatcher != null && sinkDispatcher.drainDelivered(
+                key -> postedNews.put(key, "", new byte[PostedNewsStore.DIGEST_LENGTH], 0)) > 0) {
+            postedNews.flush();
+        }
+    }
+
+    /**
+     * Waits for the sinks to publish the news queued for them and records the deliveries.
+     *
+     * @throws InterruptedException if interrupted while waiting for the sinks
+     */
+    private static void closeSinks() throws InterruptedException {
+        if (sinkDispatcher == null) {
+            return;
+        }
+        sinkDispatcher.close(SHUTDOWN_TIMEOUT_SECONDS);
+        withStore("sink deliveries", () -> {
+            recordSinkDeliveries();
+            return true;
+        });
+    }
+
+    /**
+     * Returns the key of a news in the posted news store. News of the original feed posted to the original subreddit
+     * are keyed by their URL alone, so the state recorded before feeds were configurable still applies.
+     *
+     * @param config    Configuration parameters
+     * @param feed      Feed the news belongs to
+     * @param subreddit Target subreddit name
+     * @param newsUrl   URL of the news
+     * @return Key of the news for the given feed and subreddit
+     */
+    static String stateKey(Config config, Config.Feed feed, String subreddit, String newsUrl) {
+        if (feed.url().equals(Config.DEFAULT_FEED_URL) && subreddit.equalsIgnoreCase(config.getSubreddit())) {
+            return newsUrl;
+        }
+        return feed.name() + ">" + subreddit + ">" + newsUrl;
+    }
+
+    /**
+     * Returns the page cache file of a feed. The feed of the original configuration keeps the original file.
+     *
+     * @param feed Feed of the page
+     * @return Name of the page cache file
+     */
+    private static String pageCacheFile(Config.Feed feed) {
+        return feed.url().equals(Config.DEFAULT_FEED_URL) ? PAGE_CACHE_FILE : "page_cache_" + feed.name() + ".properties";
+    }
+
+    /**
+     * Returns the checkpoint file of the backfill of a feed.
+     *
+     * @param feed Feed to backfill
+     * @return Path of the checkpoint file
+     */
+    private static Path backfillCheckpointFile(Config.Feed feed) {
+        return Path.of("backfill_" + feed.name() + ".properties");
+    }
+
+    /**
+     * Fetches the release notes webpage with a conditional GET.
+     *
+     * @param url       URL of the release notes page
+     * @param pageCache Validators of the last processed page, updated with the ones of the fetched page
+     * @return Parsed document, or null if the page has not changed since it was last processed
+     * @throws IOException if the page could not be fetched
+     */
+    private static Document fetchReleaseNotes(String url, PageCache pageCache) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("User-Agent", WEB_USER_AGENT)
+                .headers(Headers.of(pageCache.getConditionalHeaders()))
+                .build();
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (response.code() == 304) {
+                Metrics.Counter.NOT_MODIFIED.increment();
+                logger.info("Website content not modified (HTTP 304).");
+                return null;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code() + " fetching " + url);
+            }
+
+            // Already decompressed, OkHttp asks for gzip and decodes it transparently
+            byte[] body = response.body().bytes();
+            Metrics.Counter.BYTES_FETCHED.add(body.length);
+            logger.info("Fetched website content (" + body.length + " bytes over " + response.protocol() + ").");
+
+            // Fallback for servers without validators: compare the content itself
+            String digest = PageCache.digest(body);
+            if (pageCache.isUnchanged(digest)) {
+                Metrics.Counter.UNCHANGED.increment();
+                logger.info("Website content has not changed.");
+                return null;
+            }
+
+            pageCache.update(response.header("ETag"), response.header("Last-Modified"), digest);
+            return parse(response, body, url);
+        }
+    }
+
+    /**
+     * Fetches a webpage unconditionally, e.g. an archive or detail page of the release notes.
+     *
+     * @param url URL of the page
+     * @return Parsed document
+     * @throws IOException if the page could not be fetched
+     */
+    private static Document fetchPage(String url) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("User-Agent", WEB_USER_AGENT)
+                .build();
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code() + " fetching " + url);
+            }
+            byte[] body = response.body().bytes();
+            Metrics.Counter.BYTES_FETCHED.add(body.length);
+            return parse(response, body, url);
+        }
+    }
+
+    private static Document parse(Response response, byte[] body, String url) throws IOException {
+        // Without a charset in the header, Jsoup detects it from the page
+        MediaType contentType = response.body().contentType();
+        Charset charset = contentType != null ? contentType.charset() : null;
+        return Jsoup.parse(new ByteArrayInputStream(body), charset != null ? charset.name() : null, url);
     }
 
     /**
      * Parses the HTML document to extract news items.
+     * <p>
+     * The page lists the newest news first, so parsing can stop at the first news that was already posted.
      *
-     * @param doc Jsoup Document object representing the webpage
-     * @return List of NewsItem objects
+     * @param doc       Jsoup Document object representing the webpage
+     * @param stopAtUrl Predicate matching the URL of a news where parsing stops, or null to parse the whole page
+     * @return List of NewsItem objects, newest first
      */
     @NotNull
-    private static List<NewsItem> fetchNewsFromHtml(Document doc) {
+    static List<NewsItem> fetchNewsFromHtml(Document doc, Predicate<String> stopAtUrl) {
         List<NewsItem> newsItems = new ArrayList<>();
 
         // Find the main table with style containing 'margin: 0 auto'
-        Element mainTable = doc.selectFirst("table[style*=margin: 0 auto]");
+        Element mainTable = doc.selectFirst(MAIN_TABLE);
         if (mainTable == null) {
             // No main table found
             return newsItems;
         }
 
-        // Get all rows within the main table
-        Elements rows = mainTable.select("tr");
-        String currentDateTitle;
-        String currentUrl;
-        String currentImageUrl;
-        List<Headline> currentHeadlines;
-
-        for (int i = 0; i < rows.size(); i++) {
-            Element row = rows.get(i);
-            Elements headerLinks = row.select("a[target=_blank]");
-
-            if (!headerLinks.isEmpty()) {
-                String linkText = Objects.requireNonNull(headerLinks.first()).text().trim();
-                String linkHref = Objects.requireNonNull(headerLinks.first()).attr("href").trim();
-
-                if (!linkText.equalsIgnoreCase("Release-Information")) {
-                    // This is a date/title header
-                    currentDateTitle = linkText; // e.g., "2025-04-15: New Event Hide n Hype"
-                    currentUrl = linkHref;
-
-                    // Reset image and headlines
-                    currentImageUrl = null;
-                    currentHeadlines = new ArrayList<>();
-
-                    // Next row contains image and nested news table
-                    if (i + 1 < rows.size()) {
-                        Element imageNewsRow = rows.get(i + 1);
-                        // Extract image URL if present
-                        Element img = imageNewsRow.selectFirst("img");
-                        if (img != null) {
-                            currentImageUrl = img.attr("src");
-                        }
-
-                        // Extract nested news table
-                        Element nestedTable = imageNewsRow.selectFirst("table");
-                        if (nestedTable != null) {
-                            currentHeadlines = parseHeadlinesAndPoints(nestedTable);
-                        }
-
-                        // Skip the next row as it's processed
-                        i++;
-
-                        // Save the news item
-                        NewsItem item = new NewsItem(currentDateTitle, currentUrl, currentImageUrl, currentHeadlines);
-                        newsItems.add(item);
-                    }
-                }
-            }
-        }
+        // Walk the main table once, collecting news items as they are completed
+        NewsCollector.collect(mainTable, stopAtUrl, newsItems::add);
         return newsItems;
     }
 
@@ -177,14 +934,14 @@ public class RyzomRedditBot {
      * @param newsTable The nested table element containing headlines and key points
      * @return List of Headline objects
      */
-    private static List<Headline> parseHeadlinesAndPoints(Element newsTable) {
+    static List<Headline> parseHeadlinesAndPoints(Element newsTable) {
         List<Headline> headlines = new ArrayList<>();
-        Elements rows = newsTable.select("tr");
+        Elements rows = newsTable.select(ROW);
         String currentHeadlineTitle = null;
         List<String> currentKeyPoints = null;
 
         for (Element row : rows) {
-            Elements tds = row.select("td");
+            Elements tds = row.select(CELL);
             if (tds.isEmpty()) continue;
 
             Element firstTd = tds.first();
@@ -194,17 +951,17 @@ public class RyzomRedditBot {
 
             // Check for nested table with style indicating headline
             assert firstTd != null;
-            Element nestedTable = firstTd.selectFirst("table");
+            Element nestedTable = firstTd.selectFirst(TABLE);
 
             if (nestedTable != null) {
                 // Look for bold text within nested table
-                Elements bolds = nestedTable.select("b");
+                Elements bolds = nestedTable.select(BOLD);
                 if (!bolds.isEmpty()) {
                     isHeadline = true;
                     headlineTitle = Objects.requireNonNull(bolds.first()).text().trim();
                 } else {
                     // Fallback: use text from styleTd
-                    Element styleTd = nestedTable.selectFirst("td[style*=border-bottom]");
+                    Element styleTd = nestedTable.selectFirst(HEADLINE_CELL);
                     if (styleTd != null) {
                         headlineTitle = styleTd.text().trim();
                         isHeadline = true;
@@ -212,7 +969,7 @@ public class RyzomRedditBot {
                 }
             } else {
                 // Check if the row contains bold text indicating a headline
-                Elements bolds = firstTd.select("b");
+                Elements bolds = firstTd.select(BOLD);
                 if (!bolds.isEmpty()) {
                     isHeadline = true;
                     headlineTitle = Objects.requireNonNull(bolds.first()).text().trim();
@@ -231,18 +988,8 @@ public class RyzomRedditBot {
             } else {
                 // Parse key points under current headline
                 if (currentHeadlineTitle != null && tds.size() > 1) {
-                    Element keyPointsTd = tds.get(1);
-                    String htmlContent = keyPointsTd.html();
-
-                    // Split key points by the span containing the bullet symbol
-                    String[] parts = htmlContent.split("<span[^>]*style=\"[^\"]*color: #08c[^\"]*\"[^>]*>✪</span>");
-                    for (int j = 1; j < parts.length; j++) {
-                        String part = parts[j];
-                        String bulletPoint = Jsoup.parse(part).text().trim();
-                        if (!bulletPoint.isEmpty()) {
-                            currentKeyPoints.add(bulletPoint);
-                        }
-                    }
+                    // Split key points at the span containing the bullet symbol
+                    KeyPointCollector.collect(tds.get(1), currentKeyPoints);
                 }
             }
         }
@@ -255,94 +1002,83 @@ public class RyzomRedditBot {
     }
 
     /**
-     * Generates Markdown formatted text for a news item.
+     * Returns the Reddit client, creating it on first use and renewing its access token if it is about to expire.
      *
-     * @param item The news item
-     * @return Markdown string representing the news content
+     * @param config Configuration containing credentials
+     * @return Authenticated RedditClient instance
      */
-    private static String generateNewsMarkdown(NewsItem item) {
-        StringBuilder sb = new StringBuilder();
-
-        // Add each headline and its key points
-        for (Headline headline : item.headlines) {
-            sb.append("## ").append(headline.title).append("\n");
-            if (headline.keyPoints != null && !headline.keyPoints.isEmpty()) {
-                for (String point : headline.keyPoints) {
-                    sb.append("- ").append(point).append("\n");
-                }
-                sb.append("\n");
-            }
+    private static RedditClient getRedditClient(Config config) {
+        if (redditClient == null || !redditClientConfig.hasSameRedditLogin(config)) {
+            // Initialize Reddit client with credentials, a token of changed credentials is not reused
+            redditClient = createRedditClient(config, redditClient == null);
+            redditClientConfig = config;
+            logger.info("Reddit client initialized.");
+            scheduleTokenRefresh(redditClient, tokenRefreshDelay(redditClient));
+        } else if (tokenRejected || redditClient.getAuthManager().needsRenewing()) {
+            renewToken(redditClient);
         }
+        return redditClient;
+    }
 
-        // Add the posting date
-        if (!item.date.isEmpty()) {
-            sb.append("\nOriginally published on ").append(item.date).append("\n\n");
-        }
-
-        // Add image if available
-        if (item.imageUrl != null && !item.imageUrl.trim().isEmpty()) {
-            sb.append("[View news image](").append(item.imageUrl).append(") \n");
-        }
-
-        // Add main link
-        sb.append("[Read more here](").append(item.url).append(")\n");
-
-        return sb.toString();
+    /**
+     * Renews the access token of a Reddit client, storing the new one in the token file.
+     *
+     * @param reddit The Reddit client
+     */
+    private static synchronized void renewToken(RedditClient reddit) {
+        reddit.getAuthManager().renew();
+        tokenRejected = false;
+        logger.info("Reddit access token renewed.");
     }
 
     /**
-     * Loads the set of posted news IDs from the file.
+     * Schedules the background renewal of the access token, which schedules the next one in turn.
+     *
+     * @param reddit      The Reddit client
+     * @param delayMillis Milliseconds until the renewal
      */
-    private static void loadPostedNews() {
-        File file = new File(POSTED_FILE);
-        try {
-            if (!file.exists()) {
-                boolean created = file.createNewFile();
-                if (created) {
-                    logger.info("Posted news file not found. Created new file: " + POSTED_FILE);
-                } else {
-                    logger.warning("Failed to create posted news file: " + POSTED_FILE);
-                }
+    private static void scheduleTokenRefresh(RedditClient reddit, long delayMillis) {
+        tokenRefresher.schedule(() -> {
+            if (reddit != redditClient) {
+                // Replaced after a change of the credentials
+                return;
             }
-
-            // Read existing IDs from file
-            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    try {
-                        postedNewsIds.add(Integer.parseInt(line.trim()));
-                    } catch (NumberFormatException e) {
-                        logger.warning("Invalid news ID in posted news file: " + line);
-                    }
-                }
-                logger.info("Loaded " + postedNewsIds.size() + " posted news IDs.");
+            long nextDelayMillis;
+            try {
+                renewToken(reddit);
+                nextDelayMillis = tokenRefreshDelay(reddit);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to renew the Reddit access token, trying again in " +
+                        TimeUnit.MILLISECONDS.toSeconds(TOKEN_RETRY_MILLIS) + " seconds", e);
+                nextDelayMillis = TOKEN_RETRY_MILLIS;
             }
-        } catch (IOException e) {
-            logger.warning("Error reading posted news file: " + POSTED_FILE + " - " + e.getMessage());
-        }
+            scheduleTokenRefresh(reddit, nextDelayMillis);
+        }, delayMillis, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Saves a news ID to the posted news file.
+     * Returns the time until the access token of a Reddit client should be renewed.
      *
-     * @param newsId ID of the news to record
+     * @param reddit The Reddit client
+     * @return Milliseconds until the token is about to expire, at least {@link #TOKEN_RETRY_MILLIS}
      */
-    private static void savePostedNews(Integer newsId) {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(POSTED_FILE, true))) {
-            bw.write(newsId.toString());
-            bw.newLine();
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Failed to save posted news ID: " + newsId, e);
+    private static long tokenRefreshDelay(RedditClient reddit) {
+        OAuthData current = reddit.getAuthManager().getCurrent();
+        if (current == null) {
+            return TOKEN_RETRY_MILLIS;
         }
+        long expiresInMillis = current.getExpiration().getTime() - System.currentTimeMillis();
+        return Math.max(TOKEN_RETRY_MILLIS, expiresInMillis - TOKEN_REFRESH_MARGIN_MILLIS);
     }
 
     /**
      * Creates and authenticates a Reddit client using provided configuration.
      *
-     * @param config Configuration containing credentials
+     * @param config           Configuration containing credentials
+     * @param reuseStoredToken Whether a token stored by an earlier run may be used instead of logging in
      * @return Authenticated RedditClient instance
      */
-    private static RedditClient createRedditClient(Config config) {
+    private static RedditClient createRedditClient(Config config, boolean reuseStoredToken) {
         // Credentials for script-type Reddit app
         Credentials oauthCredentials = Credentials.script(
                 config.getRedditUsername(),
@@ -354,39 +1090,194 @@ public class RyzomRedditBot {
         // UserAgent for identification
         UserAgent userAgent = new UserAgent("RyzomRedditBot", config.getClientId(), "1.0.0", config.getRedditUsername());
 
+        // Derived from the shared client, so it reuses its connection pool, DNS cache and timeouts
+        OkHttpClient.Builder redditHttpClient = httpClient.newBuilder();
+
+        // A submit or comment sent again on a new connection could post twice, the scheduler decides on retries
+        redditHttpClient.retryOnConnectionFailure(false);
+        if (!config.getRedditBaseUrl().isEmpty()) {
+            redditHttpClient.addInterceptor(redirectTo(HttpUrl.get(config.getRedditBaseUrl())));
+            logger.info("Sending Reddit API requests to " + config.getRedditBaseUrl());
+        }
+
+        // Pace all API requests by the rate limit headers Reddit sends back
+        redditHttpClient.addInterceptor(rateLimiter);
+
+        // Reuse the token of an earlier run unless it is about to expire, JRAW stores every new one in the token file
+        TokenStore tokenStore;
+        try {
+            tokenStore = FileTokenStore.open(TOKEN_FILE);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read token file " + TOKEN_FILE + ", logging in", e);
+            tokenStore = new NoopTokenStore();
+        }
+        redditHttpClient.addInterceptor(rejectedToken(tokenStore, config.getRedditUsername()));
+        OkHttpNetworkAdapter networkAdapter = new OkHttpNetworkAdapter(userAgent, redditHttpClient.build());
+
+        OAuthData stored = reuseStoredToken ? tokenStore.fetchLatest(config.getRedditUsername()) : null;
+        if (stored != null
+                && stored.getExpiration().getTime() > System.currentTimeMillis() + TOKEN_REFRESH_MARGIN_MILLIS) {
+            logger.info("Reusing the stored Reddit access token, valid until " + stored.getExpiration() + ".");
+            return new RedditClient(networkAdapter, stored, oauthCredentials, tokenStore, config.getRedditUsername());
+        }
+
         // Authenticate and create Reddit client
-        return OAuthHelper.automatic(new OkHttpNetworkAdapter(userAgent), oauthCredentials);
+        return OAuthHelper.automatic(networkAdapter, oauthCredentials, tokenStore);
     }
 
     /**
-     * Posts a news update to a specified subreddit with a given flair.
+     * Creates an interceptor noticing when Reddit rejects the access token. The token is then removed from the token
+     * store, so neither this nor the next run keeps using it.
      *
-     * @param reddit    The authenticated Reddit client
-     * @param news      The news item
-     * @param content   Markdown content of the post
-     * @param subreddit Target subreddit name
-     * @param flairText Flair text to assign
+     * @param tokenStore Store holding the token
+     * @param username   Reddit username the token belongs to
+     * @return Interceptor checking the API responses
      */
-    private static void postToReddit(RedditClient reddit, NewsItem news, String content, String subreddit, String flairText) {
-        try {
-            StringBuilder title = new StringBuilder();
+    private static Interceptor rejectedToken(TokenStore tokenStore, String username) {
+        return chain -> {
+            Response response = chain.proceed(chain.request());
+            if (response.code() == 401 && !chain.request().url().encodedPath().equals("/api/v1/access_token")) {
+                logger.warning("Reddit rejected the access token, it is renewed before the next post.");
+                tokenStore.deleteLatest(username);
+                tokenRejected = true;
+            }
+            return response;
+        };
+    }
 
-            // Compose the post title with date and optional news title
-            if (news.title != null && !news.title.isEmpty()) {
-                title.append(news.title).append("\n");
-            } else {
-                title.append(news.date).append("\n");
+    /**
+     * Creates an interceptor sending all requests to another server, keeping their path and query.
+     * <p>
+     * JRAW has the Reddit hosts built in, so this is how the bot talks to a local stand-in of the API.
+     *
+     * @param baseUrl Scheme, host and port of the server
+     * @return Interceptor rewriting the request URLs
+     */
+    private static Interceptor redirectTo(HttpUrl baseUrl) {
+        return chain -> {
+            HttpUrl url = chain.request().url().newBuilder()
+                    .scheme(baseUrl.scheme())
+                    .host(baseUrl.host())
+                    .port(baseUrl.port())
+                    .build();
+            return chain.proceed(chain.request().newBuilder().url(url).build());
+        };
+    }
+
+    /**
+     * Journals a news in the outbox and queues it for posting to a specified subreddit with the flair of its feed.
+     *
+     * @param batch       Running batch of the subreddit
+     * @param feed        Feed of the news
+     * @param key         Key of the news in the posted news store
+     * @param news        The rendered news
+     * @param subreddit   Target subreddit name
+     * @param onSubmitted Called with the submission ID once the post exists
+     * @return false if the batch failed and the news was not queued
+     */
+    private static boolean postToReddit(SubmissionScheduler.Batch batch, Config.Feed feed, String key,
+                                        RenderedNews news, String subreddit, Consumer<String> onSubmitted) {
+        List<String> parts = news.markdown();
+        Outbox.Entry entry = outbox.intent(feed.name(), key, subreddit, news.news().url, news.news().date,
+                news.title(), feed.flair(), parts.getFirst(), parts.subList(1, parts.size()),
+                news.news().contentDigest(), news.news().contentFingerprint());
+        if (!batch.enqueue(new SubmissionScheduler.SubmissionJob(subreddit, entry.title(), entry.content(),
+                entry.comments(), entry.flairText(), onSubmitted, entry))) {
+            entry.done();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Replays the outbox entries of the given feeds left unfinished by an earlier run, before anything new is posted.
+     * A post whose submit may or may not have reached Reddit is looked up among the posts of the account and only
+     * submitted again if it is not there, a post missing its flair or comments gets them. Nothing is fetched, parsed
+     * or rendered again, the entries hold everything to post.
+     *
+     * @param config Configuration parameters
+     * @param feeds  Feeds polled by this instance
+     */
+    private static void replayOutbox(Config config, List<Config.Feed> feeds) {
+        for (Config.Feed feed : feeds) {
+            // Other instances may have left entries in the outbox since it was read
+            if (coordinator == null && outbox.unfinished().stream().noneMatch(entry -> entry.feed().equals(feed.name()))) {
+                continue;
             }
+            withStore("outbox of feed '" + feed.name() + "'", () -> {
+                List<Outbox.Entry> entries = outbox.unfinished().stream()
+                        .filter(entry -> entry.feed().equals(feed.name()))
+                        .toList();
+                if (entries.isEmpty()) {
+                    return true;
+                }
+                logger.info("Replaying " + entries.size() + " unfinished post(s) of feed '" + feed.name() + "'.");
+                RedditClient reddit = getRedditClient(config);
+                SubmissionScheduler.Batch batch = submissionScheduler.begin(reddit,
+                        () -> coordinator == null || coordinator.isHeld(coordinator.shardOf(feed)));
+
+                // A fresh listing, the posts of the crashed run are likely newer than the cached one
+                DuplicateGuard recovery = new DuplicateGuard(TimeUnit.MINUTES.toMillis(1), config.getDuplicatePages());
+                for (Outbox.Entry entry : entries) {
+                    if (entry.replayed() > config.getMaxAttempts()) {
+                        logger.severe("Giving up on the unfinished post of " + entry.url() + " to r/" +
+                                entry.subreddit() + " after " + config.getMaxAttempts() + " replays.");
+                        entry.done();
+                        continue;
+                    }
+                    if (entry.submissionId() == null) {
+                        PostedNewsStore.Entry posted = postedNews.get(entry.key());
+                        String earlierPost = posted != null ? posted.submissionId()
+                                : recovery.findPost(reddit, entry.subreddit(), entry.url(), entry.title(), entry.date());
+                        if (earlierPost != null) {
+                            entry.submitted(earlierPost);
+                            logger.info("Post of " + entry.url() + " reached r/" + entry.subreddit() + " as " +
+                                    earlierPost + " before the crash.");
+                        } else if (!recovery.isListed()) {
+                            // Unknown whether the post exists, submitting it again could duplicate it
+                            logger.warning("Cannot tell whether " + entry.url() + " was posted, retrying next poll.");
+                            continue;
+                        }
+                    }
+                    if (entry.submissionId() != null && !postedNews.contains(entry.key())) {
+                        postedNews.put(entry.key(), entry.submissionId(), entry.digest(), entry.fingerprint());
+                    }
+                    if (!batch.enqueue(new SubmissionScheduler.SubmissionJob(entry.subreddit(), entry.title(),
+                            entry.content(), entry.comments(), entry.flairText(), submissionId -> {
+                        postedNews.put(entry.key(), submissionId, entry.digest(), entry.fingerprint());
+                        Metrics.posted();
+                        logger.info("Posted news to r/" + entry.subreddit() + ": " + entry.url());
+                    }, entry))) {
+                        break;
+                    }
+                }
+                boolean replayed = batch.finish();
+                persist();
+                return replayed;
+            });
+        }
+    }
 
-            // Submit the post
-            SubmissionReference submissionRef = reddit.subreddit(subreddit).submit(SubmissionKind.SELF, title.toString(), content, false);
-            logger.info("Posted to Reddit with ID: " + submissionRef.getId());
+    /**
+     * Makes the posted news store and the outbox durable after a batch.
+     */
+    private static void persist() {
+        Metrics.Sample persistSample = Metrics.start(Metrics.Stage.PERSIST);
+        postedNews.flush();
+        try {
+            outbox.sync();
+        } catch (UncheckedIOException e) {
+            logger.log(Level.SEVERE, "Failed to write the outbox", e);
+        }
+        persistSample.stop();
+    }
 
-            // Set flair
-            submissionRef.flair("ryzom").updateToTemplate("", flairText);
-            logger.info("Flair set to: " + flairText);
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Failed to post to Reddit with flair", e);
+    /**
+     * Flushes and closes all log handlers.
+     */
+    private static void closeLogHandlers() {
+        for (Handler handler : Logger.getLogger("").getHandlers()) {
+            handler.close();
         }
     }
 
@@ -404,15 +1295,8 @@ public class RyzomRedditBot {
                 rootLogger.removeHandler(handler);
             }
 
-            // Console handler
-            ConsoleHandler consoleHandler = new ConsoleHandler();
-            consoleHandler.setFormatter(new ShortLogFormatter());
-            rootLogger.addHandler(consoleHandler);
-
-            // File handler
-            FileHandler fileHandler = new FileHandler("app.log", true);
-            fileHandler.setFormatter(new ShortLogFormatter());
-            rootLogger.addHandler(fileHandler);
+            // File and console output, written by a background thread so logging does not slow down posting
+            rootLogger.addHandler(AsyncLogHandler.open(LOG_FILE, LOG_LIMIT_BYTES, LOG_FILE_COUNT, LOG_QUEUE_CAPACITY, System.err));
 
             rootLogger.setLevel(Level.INFO);
         } catch (IOException e) {
@@ -424,7 +1308,7 @@ public class RyzomRedditBot {
      * Exports the configuration file from resources if it does not already exist.
      */
     private static void exportConfigIfNotExists() {
-        String configFileName = "config.properties";
+        String configFileName = Config.CONFIG_FILE;
         File configFile = new File(configFileName);
         if (!configFile.exists()) {
             try (InputStream in = RyzomRedditBot.class.getResourceAsStream("/" + configFileName);
@@ -449,6 +1333,9 @@ public class RyzomRedditBot {
      * Represents a news item with associated details.
      */
     static class NewsItem {
+        private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+        private static final long FNV_PRIME = 0x100000001b3L;
+
         final String date;      // e.g., "2025-03-07"
         final String title;     // e.g., "Rotate Outposts and Autocomplete !"
         final String url;
@@ -477,6 +1364,62 @@ public class RyzomRedditBot {
             this.headlines = headlines;
         }
 
+        /**
+         * Computes a digest over the title, headlines and key points, which changes whenever the news text does.
+         *
+         * @return First {@link PostedNewsStore#DIGEST_LENGTH} bytes of the SHA-256 digest
+         */
+        byte[] contentDigest() {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update((date + "\n" + title + "\n").getBytes(StandardCharsets.UTF_8));
+                for (Headline headline : headlines) {
+                    digest.update(("## " + headline.title + "\n").getBytes(StandardCharsets.UTF_8));
+                    if (headline.keyPoints != null) {
+                        for (String point : headline.keyPoints) {
+                            digest.update(("- " + point + "\n").getBytes(StandardCharsets.UTF_8));
+                        }
+                    }
+                }
+                return Arrays.copyOf(digest.digest(), PostedNewsStore.DIGEST_LENGTH);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+
+        /**
+         * Computes a cheap 64-bit FNV-1a fingerprint over the same text as {@link #contentDigest()}, so an unchanged
+         * news is recognized without computing its digest.
+         *
+         * @return Non-zero fingerprint
+         */
+        long contentFingerprint() {
+            long hash = fnv1a(fnv1a(FNV_OFFSET_BASIS, "", date), "", title);
+            for (Headline headline : headlines) {
+                // Marked like in the digest, so turning a key point into a headline changes the fingerprint
+                hash = fnv1a(hash, "## ", headline.title);
+                if (headline.keyPoints != null) {
+                    for (String point : headline.keyPoints) {
+                        hash = fnv1a(hash, "- ", point);
+                    }
+                }
+            }
+
+            // Zero marks an unknown fingerprint in the posted news store
+            return hash != 0 ? hash : 1;
+        }
+
+        private static long fnv1a(long hash, String marker, String text) {
+            for (int i = 0; i < marker.length(); i++) {
+                hash = (hash ^ marker.charAt(i)) * FNV_PRIME;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+            }
+            // Separates the strings, so moving text from one to the next changes the fingerprint
+            return (hash ^ '\n') * FNV_PRIME;
+        }
+
         /**
          * Generates a hash code based on the URL, assuming uniqueness.
          *
@@ -488,6 +1431,36 @@ public class RyzomRedditBot {
         }
     }
 
+    /**
+     * Represents the news of a feed whose page changed since it was last processed.
+     *
+     * @param feed      Feed of the page
+     * @param pageCache Validators of the fetched page, saved once all news were posted
+     * @param newsItems News items of the page, oldest first
+     */
+    record FeedUpdate(Config.Feed feed, PageCache pageCache, List<NewsItem> newsItems) {
+    }
+
+    /**
+     * Represents a news rendered once for all subreddits and sinks.
+     *
+     * @param news     The news item
+     * @param title    Title of the post
+     * @param markdown Markdown of the submission, followed by the comments continuing it
+     * @param text     Plain text of the news, empty if no sink needs it
+     */
+    record RenderedNews(NewsItem news, String title, List<String> markdown, String text) {
+    }
+
+    /**
+     * Represents a posted news whose content changed since it was posted.
+     *
+     * @param news   The news item as currently published
+     * @param posted Entry of the news in the posted news store
+     */
+    record ChangedNews(NewsItem news, PostedNewsStore.Entry posted) {
+    }
+
     /**
      * Represents a headline with associated key points.
      */
@@ -1,18 +1,62 @@
 package de.InVinoVeritas;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Formatter;
+import java.util.logging.Level;
 import java.util.logging.LogRecord;
 
 public class ShortLogFormatter extends Formatter {
-    private static final SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm:ss");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    // Upper-case level names, there are only a handful of levels
+    private static final Map<Level, String> levelNames = new ConcurrentHashMap<>();
+
+    // Formatted time of the second the last record was logged in, most records share it
+    private volatile CachedTime cachedTime = new CachedTime(Long.MIN_VALUE, "");
+
+    private record CachedTime(long epochSecond, String text) {
+    }
 
     @Override
     public String format(LogRecord record) {
-        String timestamp = dateFormat.format(new Date(record.getMillis()));
-        String level = record.getLevel().getLocalizedName().toUpperCase();
-        String message = formatMessage(record);
-        return String.format("[%s] [%s]: %s%n", timestamp, level, message);
+        StringBuilder sb = new StringBuilder(128);
+        formatTo(record, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends a record to a buffer, without the intermediate strings of {@link #format(LogRecord)}.
+     *
+     * @param record Record to format
+     * @param sb     Buffer to append to
+     */
+    public void formatTo(LogRecord record, StringBuilder sb) {
+        sb.append('[').append(time(record.getMillis())).append("] [")
+                .append(levelNames.computeIfAbsent(record.getLevel(), level -> level.getLocalizedName().toUpperCase(Locale.ROOT)))
+                .append("]: ").append(formatMessage(record)).append(System.lineSeparator());
+
+        if (record.getThrown() != null) {
+            StringWriter stackTrace = new StringWriter();
+            record.getThrown().printStackTrace(new PrintWriter(stackTrace));
+            sb.append(stackTrace);
+        }
+    }
+
+    private String time(long millis) {
+        long epochSecond = Math.floorDiv(millis, 1000);
+        CachedTime cached = cachedTime;
+        if (cached.epochSecond() != epochSecond) {
+            cached = new CachedTime(epochSecond, TIME_FORMAT.format(Instant.ofEpochSecond(epochSecond)));
+            cachedTime = cached;
+        }
+        return cached.text();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package de.InVinoVeritas;
+
+import java.util.logging.LogManager;
+
+/**
+ * Log manager that keeps the log handlers open while the JVM shuts down.
+ * <p>
+ * The default log manager resets itself from a shutdown hook of its own, closing all handlers. Shutdown hooks run in
+ * no defined order, so the records the bot logs from its shutdown hook would be lost at random. With this log manager,
+ * {@link #reset()} does nothing once the JVM shuts down, and the bot closes the handlers itself after its last record.
+ * It is installed through the {@code java.util.logging.manager} system property before the first logger is created.
+ */
+public class ShutdownLogManager extends LogManager {
+    @Override
+    public void reset() {
+        if (!isShuttingDown()) {
+            super.reset();
+        }
+    }
+
+    /**
+     * Checks whether the JVM shuts down, which is when no shutdown hook can be registered anymore.
+     */
+    private static boolean isShuttingDown() {
+        Thread probe = new Thread(() -> {
+        });
+        try {
+            Runtime.getRuntime().addShutdownHook(probe);
+            Runtime.getRuntime().removeShutdownHook(probe);
+            return false;
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.RenderedNews;
+
+import java.io.IOException;
+
+/**
+ * A channel news are published to besides Reddit, e.g. a chat webhook or a feed file.
+ * <p>
+ * Sinks receive each news rendered once for all channels, oldest first. Each sink is called from its own thread by the
+ * {@link SinkDispatcher}, which retries a failed publication, so a sink only has to publish a news or throw.
+ */
+interface Sink {
+    /**
+     * Returns the name of the sink, part of the keys its deliveries are recorded under. It must not change between runs.
+     *
+     * @return Name of the sink
+     */
+    String name();
+
+    /**
+     * Publishes a news.
+     *
+     * @param news The rendered news
+     * @throws IOException if the news could not be published and should be retried
+     * @throws UnconfirmedException if the news may have been published, so retrying it could publish it twice
+     */
+    void publish(RenderedNews news) throws IOException;
+
+    /**
+     * Thrown by a sink that cannot publish a news idempotently when a call failed after it may have taken effect, e.g.
+     * on a read timeout. The news counts as delivered and is not retried.
+     */
+    final class UnconfirmedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        UnconfirmedException(String message, IOException cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Returns text as a JSON string literal, for sinks building JSON payloads.
+     *
+     * @param text Text to quote
+     * @return Quoted and escaped text
+     */
+    static String jsonString(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Shortens text to a channel's limit, ending it with an ellipsis if it was cut.
+     *
+     * @param text      Text to shorten
+     * @param maxLength Maximum length in characters
+     * @return The text, or its start followed by an ellipsis
+     */
+    static String shorten(String text, int maxLength) {
+        if (text.length() <= maxLength) {
+            return text;
+        }
+        int end = maxLength - 1;
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end) + "…";
+    }
+}
@@ -0,0 +1,225 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.RenderedNews;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes news to the sinks concurrently with the Reddit posts and with each other.
+ * <p>
+ * Every sink has a lane of its own: a single thread working off a bounded queue, which keeps the news in order, and
+ * its own retry state. A slow or failing sink only fills its own queue, news it cannot take are offered again with
+ * the next poll. After a news ran out of attempts too often in a row, the sink is paused for a while and the news are
+ * skipped until then. Deliveries are collected here and recorded in the posted news store by the polling thread, so
+ * the store is still only changed by one thread.
+ */
+final class SinkDispatcher {
+    // Backoff before the first retry of a publication, doubled with each further retry
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+
+    // Pause of a sink after consecutive news failed, as it is likely down
+    private static final long PAUSE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final Logger logger = Logger.getLogger(SinkDispatcher.class.getName());
+
+    private final List<Lane> lanes = new ArrayList<>();
+    private final int maxAttempts;
+
+    // Keys of the news queued or being published, so a news is not queued twice before it is delivered
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Keys of delivered news, not recorded in the posted news store yet
+    private final Queue<String> delivered = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Starts a lane for each sink.
+     *
+     * @param sinks         Sinks to publish to
+     * @param queueCapacity Number of news each sink can have waiting
+     * @param maxAttempts   Attempts to publish a news before giving up until the next poll
+     */
+    SinkDispatcher(List<Sink> sinks, int queueCapacity, int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        for (Sink sink : sinks) {
+            lanes.add(new Lane(sink, queueCapacity));
+        }
+    }
+
+    /**
+     * Returns the key a delivery is recorded under in the posted news store.
+     *
+     * @param sinkName Name of the sink
+     * @param feedName Name of the feed of the news
+     * @param url      URL of the news
+     * @return Key of the delivery
+     */
+    static String key(String sinkName, String feedName, String url) {
+        return "sink>" + sinkName + ">" + feedName + ">" + url;
+    }
+
+    /**
+     * Checks whether a news was delivered to all sinks.
+     *
+     * @param feedName Name of the feed of the news
+     * @param url      URL of the news
+     * @param recorded Tells whether a key is recorded in the posted news store
+     * @return true if no sink is missing the news
+     */
+    boolean isDelivered(String feedName, String url, Predicate<String> recorded) {
+        return lanes.stream().allMatch(lane -> recorded.test(key(lane.sink.name(), feedName, url)));
+    }
+
+    /**
+     * Queues a news for each sink it was not delivered to yet, without waiting for any sink.
+     *
+     * @param feedName Name of the feed of the news
+     * @param news     The rendered news
+     * @param recorded Tells whether a key is recorded in the posted news store
+     */
+    void dispatch(String feedName, RenderedNews news, Predicate<String> recorded) {
+        for (Lane lane : lanes) {
+            String key = key(lane.sink.name(), feedName, news.news().url);
+            if (recorded.test(key) || !inFlight.add(key)) {
+                continue;
+            }
+            try {
+                lane.executor.execute(() -> lane.publish(key, news));
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(key);
+                logger.warning("Queue of sink '" + lane.sink.name() + "' is full, offering again next poll: " +
+                        news.news().url);
+            }
+        }
+    }
+
+    /**
+     * Hands the deliveries since the last call over to be recorded.
+     *
+     * @param record Records the key of a delivery
+     * @return Number of deliveries handed over
+     */
+    int drainDelivered(Consumer<String> record) {
+        int count = 0;
+        String key;
+        while ((key = delivered.poll()) != null) {
+            record.accept(key);
+            inFlight.remove(key);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Stops taking news and waits for the queued ones to be published.
+     *
+     * @param timeoutSeconds Time to wait for all sinks together
+     * @return true if all queued news were handled in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean close(long timeoutSeconds) throws InterruptedException {
+        for (Lane lane : lanes) {
+            lane.executor.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        boolean finished = true;
+        for (Lane lane : lanes) {
+            if (!lane.executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                logger.warning("Sink '" + lane.sink.name() + "' still busy, its remaining news are offered next run.");
+                lane.executor.shutdownNow();
+                finished = false;
+            }
+        }
+        return finished;
+    }
+
+    /**
+     * The thread, queue and retry state of one sink.
+     */
+    private final class Lane {
+        private final Sink sink;
+        private final ThreadPoolExecutor executor;
+
+        // Retry state, only used by the thread of the lane
+        private int consecutiveFailures;
+        private long pausedUntil;
+
+        private Lane(Sink sink, int queueCapacity) {
+            this.sink = sink;
+            this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread thread = new Thread(r, "RyzomRedditBot-sink-" + sink.name());
+                // A hanging sink must not keep the JVM alive
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        private void publish(String key, RenderedNews news) {
+            boolean published = false;
+            try {
+                if (System.currentTimeMillis() < pausedUntil) {
+                    return;
+                }
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        sink.publish(news);
+                        published = true;
+                        consecutiveFailures = 0;
+                        delivered.add(key);
+                        Metrics.Counter.SINK_DELIVERED.increment();
+                        logger.info("Published news to sink '" + sink.name() + "': " + news.news().url);
+                        return;
+                    } catch (Sink.UnconfirmedException e) {
+                        // Possibly published, publishing it again could show it twice
+                        published = true;
+                        consecutiveFailures = 0;
+                        delivered.add(key);
+                        Metrics.Counter.SINK_FAILED.increment();
+                        logger.log(Level.WARNING, "Sink '" + sink.name() + "' may not have published news, not " +
+                                "retrying it: " + news.news().url, e);
+                        return;
+                    } catch (Exception e) {
+                        if (attempt >= maxAttempts) {
+                            failed(news, e);
+                            return;
+                        }
+                        logger.fine("Retrying sink '" + sink.name() + "' after: " + e.getMessage());
+                        TimeUnit.MILLISECONDS.sleep(RETRY_BACKOFF_MILLIS << (attempt - 1));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // A delivered news stays in flight until it is recorded
+                if (!published) {
+                    inFlight.remove(key);
+                }
+            }
+        }
+
+        private void failed(RenderedNews news, Exception e) {
+            Metrics.Counter.SINK_FAILED.increment();
+            logger.log(Level.WARNING, "Failed to publish news to sink '" + sink.name() + "', offering again next poll: " +
+                    news.news().url, e);
+            if (++consecutiveFailures >= maxAttempts) {
+                consecutiveFailures = 0;
+                pausedUntil = System.currentTimeMillis() + PAUSE_MILLIS;
+                logger.warning("Pausing sink '" + sink.name() + "' for " +
+                        TimeUnit.MILLISECONDS.toMinutes(PAUSE_MILLIS) + " minutes after repeated failures.");
+            }
+        }
+    }
+}
@@ -0,0 +1,520 @@
+package de.InVinoVeritas;
+
+import net.dean.jraw.ApiException;
+import net.dean.jraw.RedditClient;
+import net.dean.jraw.http.NetworkException;
+import net.dean.jraw.models.SubmissionKind;
+import net.dean.jraw.references.SubmissionReference;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Posts queued news to Reddit strictly in the order they were queued, while further news are still being rendered.
+ * <p>
+ * A submission job is a submit followed by a flair update and the comments continuing a post too long for one
+ * submission; an edit job replaces the text of an earlier submission. Transient failures (HTTP 429 and 5xx, network
+ * errors and Reddit's {@code RATELIMIT} error) are retried with exponential backoff and jitter; the request rate itself
+ * is paced by the {@link RedditRateLimiter} of the client, and a request it turns away unsent is retried once the rate
+ * limit window resets, without counting as an attempt. A submit or comment is not idempotent: it is only retried
+ * right away if it provably never reached Reddit, otherwise it is looked up among the posts of the account first and
+ * only retried if it is not there. When a submit fails for good, the remaining jobs are
+ * dropped, so no newer news is posted before an older one. They are picked up again by the next poll. A flair or
+ * comment that Reddit refuses would be refused again by every replay, so its post is finished without it. A failed
+ * edit only skips that edit, it is tried again when the news changes the next time.
+ */
+public class SubmissionScheduler {
+    private static final long BASE_DELAY_MILLIS = 2_000;
+    private static final long MAX_DELAY_MILLIS = 5 * 60_000;
+
+    private static final Logger logger = Logger.getLogger(SubmissionScheduler.class.getName());
+
+    // Capacity of the queues between the stages of a batch
+    private static final int QUEUE_CAPACITY = 16;
+
+    // Markers closing the queues of a batch
+    private static final Job END = new EditJob("", "", () -> {
+    });
+    private static final Runnable FOLLOW_UPS_END = () -> {
+    };
+
+    private final int maxAttempts;
+    private final int lookupPages;
+
+    /**
+     * A queued API call.
+     */
+    public sealed interface Job permits SubmissionJob, EditJob {
+    }
+
+    /**
+     * A news waiting to be posted.
+     *
+     * @param subreddit   Target subreddit name
+     * @param title       Title of the post
+     * @param content     Markdown content of the post
+     * @param comments    Markdown content of the comments continuing the post, in order
+     * @param flairText   Flair text to assign
+     * @param onSubmitted Called with the submission ID right after the submit succeeded
+     * @param entry       Outbox entry journaling the post; if it already has a submission ID, only the flair and the
+     *                    comments still missing are posted
+     */
+    public record SubmissionJob(String subreddit, String title, String content, List<String> comments,
+                                String flairText, Consumer<String> onSubmitted, Outbox.Entry entry) implements Job {
+    }
+
+    /**
+     * A changed news whose submission waits to be updated.
+     *
+     * @param submissionId ID of the submission to edit
+     * @param content      New Markdown content of the post
+     * @param onEdited     Called right after the edit succeeded
+     */
+    public record EditJob(String submissionId, String content, Runnable onEdited) implements Job {
+    }
+
+    /**
+     * How an API call on an existing post ended.
+     */
+    private enum Outcome {
+        SUCCEEDED,
+        // Failed transiently, it may succeed when tried again later
+        FAILED,
+        // Refused by Reddit, trying it again would fail the same way
+        REFUSED
+    }
+
+    /**
+     * Thrown when a call failed after it may have reached Reddit, and looking it up failed too.
+     */
+    private static final class UnconfirmedCallException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        UnconfirmedCallException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Looks up whether a call that failed after it may have reached Reddit took effect.
+     */
+    @FunctionalInterface
+    private interface Lookup<T> {
+        /**
+         * @return Result of the call if it took effect, null if it did not
+         */
+        T find();
+    }
+
+    /**
+     * @param maxAttempts Attempts per API call before a transient failure is given up on
+     * @param lookupPages Listing pages of 100 posts to read when looking up a post whose response was lost
+     */
+    public SubmissionScheduler(int maxAttempts, int lookupPages) {
+        this.maxAttempts = maxAttempts;
+        this.lookupPages = lookupPages;
+    }
+
+    /**
+     * Starts posting a batch of jobs. The jobs are posted while further ones are still being queued.
+     *
+     * @param reddit  The authenticated Reddit client
+     * @param mayPost Checked before every job, e.g. the fencing token of a lease; if false, the remaining jobs are dropped
+     * @return The running batch, to be finished with {@link Batch#finish()}
+     */
+    public Batch begin(RedditClient reddit, BooleanSupplier mayPost) {
+        return new Batch(reddit, mayPost);
+    }
+
+    /**
+     * A batch of jobs flowing through the stages of the scheduler.
+     * <p>
+     * The caller renders and queues the jobs, the submit stage posts them strictly in queue order and records each
+     * post through its callback as soon as it exists, and the follow-up stage sets the flair of each post and adds its
+     * comments while the next one is already submitted. The stages are connected by bounded queues: a stage that falls
+     * behind blocks the one in front of it, so rendering never runs far ahead of what Reddit accepts.
+     */
+    public final class Batch {
+        private final RedditClient reddit;
+        private final BooleanSupplier mayPost;
+        private final BlockingQueue<Job> jobs = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final BlockingQueue<Runnable> followUps = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final Thread submitStage;
+        private final Thread followUpStage;
+
+        // Set once a submit failed for good or posting was no longer allowed, the remaining jobs are dropped
+        private volatile boolean failed;
+
+        private Batch(RedditClient reddit, BooleanSupplier mayPost) {
+            this.reddit = reddit;
+            this.mayPost = mayPost;
+            this.submitStage = Thread.ofVirtual().name("RyzomRedditBot-submit").start(this::submitJobs);
+            this.followUpStage = Thread.ofVirtual().name("RyzomRedditBot-follow-up").start(this::runFollowUps);
+        }
+
+        /**
+         * Queues a job, waiting while the submit stage is a full queue behind.
+         *
+         * @param job Job to queue
+         * @return false if the batch failed and no further jobs should be queued
+         */
+        public boolean enqueue(Job job) {
+            if (failed) {
+                return false;
+            }
+            try {
+                jobs.put(job);
+                return !failed;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * Waits until all queued jobs and their follow-up calls are done.
+         *
+         * @return true if all jobs were submitted, false if a submit failed or posting was no longer allowed and the
+         * remaining jobs were dropped
+         */
+        public boolean finish() {
+            try {
+                jobs.put(END);
+                submitStage.join();
+                followUpStage.join();
+            } catch (InterruptedException e) {
+                logger.warning("Interrupted while posting, " + jobs.size() + " queued post(s) left for the next poll.");
+                submitStage.interrupt();
+                followUpStage.interrupt();
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return !failed;
+        }
+
+        private void submitJobs() {
+            try {
+                Job next;
+                while ((next = jobs.take()) != END) {
+                    if (!failed && !mayPost.getAsBoolean()) {
+                        logger.severe("No longer allowed to post, queued post(s) dropped.");
+                        failed = true;
+                    }
+                    if (failed) {
+                        // Keep taking the dropped jobs, so the caller is never blocked on a full queue. A dropped
+                        // news was never submitted, the next poll journals it again.
+                        if (next instanceof SubmissionJob job && job.entry().submissionId() == null) {
+                            job.entry().done();
+                        }
+                    } else if (next instanceof EditJob edit) {
+                        edit(edit);
+                    } else if (!submit((SubmissionJob) next)) {
+                        failed = true;
+                    }
+                }
+                followUps.put(FOLLOW_UPS_END);
+            } catch (InterruptedException e) {
+                failed = true;
+                followUpStage.interrupt();
+            }
+        }
+
+        private void runFollowUps() {
+            try {
+                Runnable next;
+                while ((next = followUps.take()) != FOLLOW_UPS_END) {
+                    next.run();
+                }
+            } catch (InterruptedException e) {
+                // Stopped, the posts exist and only miss their flair or comments
+            }
+        }
+
+        private void edit(EditJob edit) throws InterruptedException {
+            String action = "edit Reddit post " + edit.submissionId();
+            if (followUp(Metrics.Stage.EDIT, action, () -> {
+                reddit.submission(edit.submissionId()).edit(edit.content());
+                return null;
+            }) == Outcome.SUCCEEDED) {
+                logger.info("Edited Reddit post " + edit.submissionId());
+                edit.onEdited().run();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+        }
+
+        private boolean submit(SubmissionJob job) throws InterruptedException {
+            Outbox.Entry entry = job.entry();
+            SubmissionReference submissionRef;
+            boolean resumed = entry.submissionId() != null;
+            if (resumed) {
+                // Submitted by an earlier run, only the follow-up calls are missing
+                submissionRef = reddit.submission(entry.submissionId());
+            } else {
+                // The intent must be on disk before the post can exist
+                try {
+                    entry.sync();
+                } catch (UncheckedIOException e) {
+                    Metrics.Counter.ITEMS_FAILED.increment();
+                    logger.log(Level.SEVERE, "Not posting to r/" + job.subreddit() + " without the outbox", e);
+                    return false;
+                }
+
+                Metrics.Sample submitSample = Metrics.start(Metrics.Stage.SUBMIT);
+                try {
+                    submissionRef = withRetries("submit to r/" + job.subreddit(), () ->
+                            reddit.subreddit(job.subreddit()).submit(SubmissionKind.SELF, job.title(), job.content(), false),
+                            () -> findSubmission(entry));
+                } catch (RuntimeException e) {
+                    // The intent stays unfinished, the replay looks the post up again before submitting it
+                    Metrics.Counter.ITEMS_FAILED.increment();
+                    logger.log(Level.SEVERE, "Failed to post to r/" + job.subreddit() + ", " + jobs.size() +
+                            " queued post(s) left for the next poll", e);
+                    return false;
+                } finally {
+                    submitSample.stop();
+                }
+                logger.info("Posted to Reddit with ID: " + submissionRef.getId());
+                entry.submitted(submissionRef.getId());
+                job.onSubmitted().accept(submissionRef.getId());
+            }
+
+            // The post exists now, a flair or comment failure must not hold back the following posts
+            followUps.put(() -> {
+                Outcome flaired = Outcome.SUCCEEDED;
+                if (!entry.isFlaired()) {
+                    String action = "set flair on Reddit post " + submissionRef.getId();
+                    flaired = followUp(Metrics.Stage.FLAIR, action, () -> {
+                        submissionRef.flair(job.subreddit()).updateToTemplate("", job.flairText());
+                        return null;
+                    });
+                    if (flaired == Outcome.SUCCEEDED) {
+                        entry.flaired();
+                        logger.info("Flair set to: " + job.flairText());
+                    }
+                }
+
+                // An earlier run may have posted the next comment without journaling it
+                if (resumed && entry.commentsPosted() < job.comments().size()) {
+                    int next = entry.commentsPosted();
+                    try {
+                        if (DuplicateGuard.findComment(reddit, submissionRef.getId(), job.comments().get(next),
+                                lookupPages) != null) {
+                            entry.commented(next + 1);
+                        }
+                    } catch (Exception e) {
+                        // Posting it without knowing could duplicate it, the next replay looks again
+                        logger.log(Level.WARNING, "Failed to look up comment " + (next + 1) + " on Reddit post " +
+                                submissionRef.getId() + ", retrying with the next poll", e);
+                        return;
+                    }
+                }
+
+                // A comment is only posted after the one before, so the post reads in order
+                Outcome commented = Outcome.SUCCEEDED;
+                for (int i = entry.commentsPosted();
+                     i < job.comments().size() && !Thread.currentThread().isInterrupted(); i++) {
+                    String comment = job.comments().get(i);
+                    commented = followUp(Metrics.Stage.COMMENT, "post comment " + (i + 1) + " on Reddit post " +
+                            submissionRef.getId(), () -> {
+                        submissionRef.reply(comment);
+                        return Boolean.TRUE;
+                    }, () -> DuplicateGuard.findComment(reddit, submissionRef.getId(), comment, lookupPages) != null
+                            ? Boolean.TRUE : null);
+                    if (commented != Outcome.SUCCEEDED) {
+                        break;
+                    }
+                    entry.commented(i + 1);
+                }
+
+                // A refused call would be refused again by every replay, leaving the entry unfinished for good
+                if (commented == Outcome.REFUSED
+                        || flaired == Outcome.REFUSED && entry.commentsPosted() >= job.comments().size()) {
+                    logger.severe("Giving up on the missing flair or comments of Reddit post " + submissionRef.getId() +
+                            ", Reddit refused them.");
+                    entry.done();
+                }
+            });
+            return true;
+        }
+
+        /**
+         * Looks up the post of an entry among the submissions of the account.
+         *
+         * @return The post, or null if it does not exist
+         */
+        private SubmissionReference findSubmission(Outbox.Entry entry) {
+            DuplicateGuard listing = new DuplicateGuard(0, lookupPages);
+            String id = listing.findPost(reddit, entry.subreddit(), entry.url(), entry.title(), entry.date());
+            if (id == null && !listing.isListed()) {
+                throw new IllegalStateException("Failed to list the submissions of the account");
+            }
+            return id != null ? reddit.submission(id) : null;
+        }
+    }
+
+    /**
+     * Runs an idempotent API call on a post that already exists, logging a failure instead of throwing it.
+     *
+     * @return How the call ended
+     */
+    private Outcome followUp(Metrics.Stage stage, String action, Supplier<?> call) {
+        return followUp(stage, action, call, null);
+    }
+
+    /**
+     * Runs an API call on a post that already exists, logging a failure instead of throwing it.
+     *
+     * @param lookup Tells whether the call took effect after a failure that may have reached Reddit, null for an
+     *               idempotent call
+     * @return How the call ended
+     */
+    private <T> Outcome followUp(Metrics.Stage stage, String action, Supplier<T> call, Lookup<T> lookup) {
+        Metrics.Sample sample = Metrics.start(stage);
+        try {
+            withRetries(action, call, lookup);
+            return Outcome.SUCCEEDED;
+        } catch (RuntimeException | InterruptedException e) {
+            logger.log(Level.SEVERE, "Failed to " + action, e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                return Outcome.FAILED;
+            }
+            return e instanceof UnconfirmedCallException || isTransient(e) ? Outcome.FAILED : Outcome.REFUSED;
+        } finally {
+            sample.stop();
+        }
+    }
+
+    /**
+     * Runs an API call, retrying transient failures with exponential backoff and jitter.
+     * <p>
+     * Without a lookup, the call must be idempotent and is retried after any transient failure. A call that is not is
+     * only retried right away if it provably never reached Reddit. After any other transient failure, e.g. a response
+     * lost to a timeout, the lookup tells whether it took effect, and it is only retried if it did not.
+     *
+     * @param lookup Finds the result of the call if it took effect, null for an idempotent call
+     * @throws IllegalStateException if it cannot be told whether a failed call took effect
+     */
+    private <T> T withRetries(String action, Supplier<T> call, Lookup<T> lookup) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (Exception e) {
+                // Held back by the rate limiter without being sent, waited out here so it costs no attempt
+                RedditRateLimiter.RateLimitedException limited = rateLimited(e);
+                if (limited != null) {
+                    logger.info("Reddit rate limit reached, waiting " + (limited.getWaitMillis() + 999) / 1000 +
+                            " seconds to " + action + ".");
+                    Thread.sleep(limited.getWaitMillis());
+                    attempt--;
+                    continue;
+                }
+
+                // JRAW is written in Kotlin and may throw checked exceptions like IOException undeclared
+                if (!isTransient(e)) {
+                    throw e instanceof RuntimeException runtimeException ? runtimeException : new RuntimeException(e);
+                }
+                if (lookup != null && !isRejected(e)) {
+                    T result = lookUp(action, lookup, e);
+                    if (result != null) {
+                        logger.warning("Attempt " + attempt + " to " + action + " failed (" + e.getMessage() +
+                                "), but it reached Reddit.");
+                        return result;
+                    }
+                }
+                if (attempt >= maxAttempts) {
+                    throw e instanceof RuntimeException runtimeException ? runtimeException : new RuntimeException(e);
+                }
+                long delay = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt - 1, 20));
+                delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+                Metrics.Counter.RETRIES.increment();
+                logger.warning("Attempt " + attempt + " to " + action + " failed (" + e.getMessage() +
+                        "), retrying in " + delay + " ms.");
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Looks up whether a failed call took effect.
+     */
+    private static <T> T lookUp(String action, Lookup<T> lookup, Exception failure) {
+        try {
+            return lookup.find();
+        } catch (Exception e) {
+            IllegalStateException unknown = new UnconfirmedCallException("Cannot tell whether the attempt to " + action +
+                    " reached Reddit", e);
+            unknown.addSuppressed(failure);
+            throw unknown;
+        }
+    }
+
+    /**
+     * Returns the exception of the rate limiter that held a failed API call back before it was sent, if any.
+     */
+    private static RedditRateLimiter.RateLimitedException rateLimited(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RedditRateLimiter.RateLimitedException limited) {
+                return limited;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a failed API call provably never took effect: the connection could not be established, the rate
+     * limit turned the request away before Reddit handled it, or Reddit refused it with its {@code RATELIMIT} error.
+     */
+    private static boolean isRejected(Throwable e) {
+        if (e instanceof NetworkException networkException) {
+            // A 429 from the rate limit carries an error message, not the result envelope of the call
+            String body = networkException.getRes().getBody();
+            return networkException.getRes().getCode() == 429 && (body == null || !body.contains("\"json\""));
+        }
+        if (e instanceof ApiException apiException) {
+            return "RATELIMIT".equals(apiException.getCode());
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof NoRouteToHostException
+                    || cause instanceof UnknownHostException || cause instanceof RedditRateLimiter.RateLimitedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a failed API call may succeed when retried.
+     */
+    private static boolean isTransient(Throwable e) {
+        if (e instanceof NetworkException networkException) {
+            int code = networkException.getRes().getCode();
+            return code == 429 || code >= 500;
+        }
+        if (e instanceof ApiException apiException) {
+            return "RATELIMIT".equals(apiException.getCode());
+        }
+
+        // Network errors
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException || cause instanceof UncheckedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,59 @@
+package de.InVinoVeritas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncLogHandlerTest {
+    private static final String TEST_LOG_FILE = "test_app.log";
+
+    @BeforeEach
+    public void setup() throws IOException {
+        cleanup();
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(Path.of(TEST_LOG_FILE));
+        for (int i = 1; i <= 3; i++) {
+            Files.deleteIfExists(Path.of(TEST_LOG_FILE + "." + i));
+        }
+    }
+
+    @Test
+    public void testPublish_writesAllRecordsOnClose() throws IOException {
+        AsyncLogHandler handler = AsyncLogHandler.open(TEST_LOG_FILE, 1024 * 1024, 2, 1024, null);
+        for (int i = 0; i < 500; i++) {
+            handler.publish(new LogRecord(Level.INFO, "Message " + i + " ✪"));
+        }
+        handler.close();
+
+        var lines = Files.readAllLines(Path.of(TEST_LOG_FILE));
+        assertEquals(500, lines.size());
+        assertTrue(lines.get(0).matches("\\[\\d\\d:\\d\\d:\\d\\d] \\[INFO]: Message 0 ✪"));
+        assertTrue(lines.get(499).endsWith("Message 499 ✪"));
+    }
+
+    @Test
+    public void testPublish_rotatesBySize() throws IOException {
+        AsyncLogHandler handler = AsyncLogHandler.open(TEST_LOG_FILE, 1000, 2, 1024, null);
+        for (int i = 0; i < 200; i++) {
+            handler.publish(new LogRecord(Level.INFO, "Message " + i));
+        }
+        handler.close();
+
+        assertTrue(Files.size(Path.of(TEST_LOG_FILE)) <= 1000);
+        assertTrue(Files.size(Path.of(TEST_LOG_FILE + ".1")) <= 1100);
+        assertTrue(Files.exists(Path.of(TEST_LOG_FILE + ".2")));
+        assertFalse(Files.exists(Path.of(TEST_LOG_FILE + ".3")));
+        assertTrue(Files.readString(Path.of(TEST_LOG_FILE)).contains("Message 199"));
+    }
+}
@@ -0,0 +1,132 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.NewsItem;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BackfillTest {
+    private static final String PAGE_URL = "https://app.ryzom.com/app_releasenotes/index.php?lang=en";
+    private static final int NEWS = 9;
+    private static final int NEWS_PER_PAGE = 3;
+
+    @TempDir
+    Path dir;
+
+    private final List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void testRunCommitsInChronologicalOrder() throws Exception {
+        List<String> committed = new ArrayList<>();
+
+        boolean complete = backfill().run(url -> url.equals(newsUrl(4)), news -> {
+            news.forEach(item -> committed.add(item.url));
+            return true;
+        });
+
+        assertTrue(complete);
+        assertEquals(List.of(newsUrl(1), newsUrl(2), newsUrl(3), newsUrl(5), newsUrl(6), newsUrl(7), newsUrl(8),
+                newsUrl(9)), committed);
+        assertFalse(fetched.contains(newsUrl(4)));
+    }
+
+    @Test
+    public void testRunResumesAfterCheckpoint() throws Exception {
+        Set<String> posted = new HashSet<>();
+        List<String> committed = new ArrayList<>();
+
+        // Posting fails at news 6, every older news was committed
+        boolean complete = backfill().run(posted::contains, news -> {
+            for (NewsItem item : news) {
+                if (item.url.equals(newsUrl(6))) {
+                    return false;
+                }
+                posted.add(item.url);
+                committed.add(item.url);
+            }
+            return true;
+        });
+        assertFalse(complete);
+        Properties checkpoint = new Properties();
+        try (Reader in = Files.newBufferedReader(dir.resolve("backfill_en.properties"))) {
+            checkpoint.load(in);
+        }
+        int checkpointId = Integer.parseInt(checkpoint.getProperty("committed").substring(newsUrl(0).length() - 1));
+        assertTrue(checkpointId < 6);
+
+        // The next run continues after the checkpoint
+        fetched.clear();
+        complete = backfill().run(posted::contains, news -> {
+            news.forEach(item -> committed.add(item.url));
+            return true;
+        });
+
+        assertTrue(complete);
+        List<String> expected = new ArrayList<>();
+        for (int id = 1; id <= NEWS; id++) {
+            expected.add(newsUrl(id));
+        }
+        assertEquals(expected, committed);
+        for (int id = 1; id <= checkpointId; id++) {
+            assertFalse(fetched.contains(newsUrl(id)));
+        }
+    }
+
+    private Backfill backfill() {
+        Config.Feed feed = new Config.Feed("en", PAGE_URL, List.of("test"), "Release Note");
+        return new Backfill(feed, this::fetch, "page", 10, 2, dir.resolve("backfill_en.properties"));
+    }
+
+    /**
+     * Serves archive pages of three news each, newest first, and detail pages that take longer the older the news
+     * is, so they complete out of order.
+     */
+    private Document fetch(String url) throws IOException {
+        fetched.add(url);
+        StringBuilder sb = new StringBuilder("<table style=\"margin: 0 auto\">\n");
+        if (url.contains("&id=")) {
+            int id = Integer.parseInt(url.substring(url.indexOf("&id=") + 4));
+            try {
+                TimeUnit.MILLISECONDS.sleep((NEWS - id) * 10L);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            appendNews(sb, id);
+        } else {
+            int page = url.contains("&page=") ? Integer.parseInt(url.substring(url.indexOf("&page=") + 6)) : 1;
+            int newest = NEWS - (page - 1) * NEWS_PER_PAGE;
+            for (int id = newest; id > newest - NEWS_PER_PAGE && id >= 1; id--) {
+                appendNews(sb, id);
+            }
+        }
+        return Jsoup.parse(sb.append("</table>").toString(), url);
+    }
+
+    private static void appendNews(StringBuilder sb, int id) {
+        sb.append("<tr><td><a href=\"").append(newsUrl(id).replace("&", "&amp;")).append("\" target=\"_blank\">")
+                .append("2025-01-0").append(id).append(": News ").append(id).append("</a></td></tr>\n")
+                .append("<tr><td><table><tr><td><b>Features</b></td></tr>\n")
+                .append("<tr><td></td><td>Point of news ").append(id).append("</td></tr></table></td></tr>\n");
+    }
+
+    private static String newsUrl(int id) {
+        return PAGE_URL + "&id=" + id;
+    }
+}
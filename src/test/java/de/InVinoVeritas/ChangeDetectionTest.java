@@ -0,0 +1,95 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.Headline;
+import de.InVinoVeritas.RyzomRedditBot.NewsItem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeDetectionTest {
+    private static final String URL = "https://app.ryzom.com/app_releasenotes/index.php?lang=en&id=7";
+
+    private static final NewsItem NEWS = news(new Headline("Features", List.of("Outposts rotate", "Autocomplete")));
+
+    @TempDir
+    Path dir;
+
+    private PostedNewsStore store;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        store = PostedNewsStore.open(dir.resolve("posted_news.db").toString(), dir.resolve("posted_news.txt").toString());
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        store.close();
+    }
+
+    @Test
+    public void testIsChanged_editsChangedContent() {
+        PostedNewsStore.Entry posted = post(NEWS, "abc");
+        NewsItem changed = news(new Headline("Features", List.of("Outposts rotate weekly", "Autocomplete")));
+
+        assertTrue(RyzomRedditBot.isChanged(store, URL, changed, posted));
+        // The new content is only recorded once the edit succeeded
+        assertEquals(NEWS.contentFingerprint(), store.get(URL).contentFingerprint());
+    }
+
+    @Test
+    public void testIsChanged_skipsUnchangedContent() {
+        PostedNewsStore.Entry posted = post(NEWS, "abc");
+        NewsItem same = news(new Headline("Features", List.of("Outposts rotate", "Autocomplete")));
+
+        assertFalse(RyzomRedditBot.isChanged(store, URL, same, posted));
+    }
+
+    @Test
+    public void testIsChanged_detectsKeyPointTurnedIntoHeadline() {
+        PostedNewsStore.Entry posted = post(NEWS, "abc");
+        NewsItem moved = news(new Headline("Features", List.of("Outposts rotate")),
+                new Headline("Autocomplete", List.of()));
+
+        assertNotEquals(NEWS.contentFingerprint(), moved.contentFingerprint());
+        assertTrue(RyzomRedditBot.isChanged(store, URL, moved, posted));
+    }
+
+    @Test
+    public void testIsChanged_onlyRecordsEntryWithoutDigest() {
+        store.put(URL, "abc", new byte[PostedNewsStore.DIGEST_LENGTH], 0);
+
+        assertFalse(RyzomRedditBot.isChanged(store, URL, NEWS, store.get(URL)));
+        assertArrayEquals(NEWS.contentDigest(), store.get(URL).contentDigest());
+        assertEquals(NEWS.contentFingerprint(), store.get(URL).contentFingerprint());
+    }
+
+    @Test
+    public void testIsChanged_onlyRecordsEntryWithoutSubmissionId() {
+        PostedNewsStore.Entry posted = post(news(new Headline("Features", List.of("Outposts rotate"))), "");
+
+        assertFalse(RyzomRedditBot.isChanged(store, URL, NEWS, posted));
+        assertEquals("", store.get(URL).submissionId());
+        assertArrayEquals(NEWS.contentDigest(), store.get(URL).contentDigest());
+        assertEquals(NEWS.contentFingerprint(), store.get(URL).contentFingerprint());
+    }
+
+    private PostedNewsStore.Entry post(NewsItem news, String submissionId) {
+        store.put(URL, submissionId, news.contentDigest(), news.contentFingerprint());
+        return store.get(URL);
+    }
+
+    private static NewsItem news(Headline... headlines) {
+        return new NewsItem("2025-03-07: Rotate Outposts", URL, null, List.of(headlines));
+    }
+}
@@ -0,0 +1,40 @@
+package de.InVinoVeritas;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ConfigTest {
+    private static final String CREDENTIALS = """
+            reddit.username=bot
+            reddit.password=secret
+            reddit.client.id=id
+            reddit.client.secret=client-secret
+            reddit.subreddit=test
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testMetricsPort_zeroDisablesMetrics() throws IOException {
+        assertEquals(0, load("").getMetricsPort());
+        assertEquals(0, load("metrics.port=0\n").getMetricsPort());
+        assertEquals(9464, load("metrics.port=9464\n").getMetricsPort());
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> load("metrics.port=-1\n"));
+        assertEquals("Invalid property: metrics.port must be zero or a positive number", e.getMessage());
+    }
+
+    private Config load(String properties) throws IOException {
+        Path file = dir.resolve(Config.CONFIG_FILE);
+        Files.writeString(file, CREDENTIALS + properties);
+        return new Config(file);
+    }
+}
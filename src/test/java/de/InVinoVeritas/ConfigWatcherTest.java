@@ -0,0 +1,49 @@
+package de.InVinoVeritas;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ConfigWatcherTest {
+    private static final String CREDENTIALS = """
+            reddit.username=bot
+            reddit.password=secret
+            reddit.client.id=id
+            reddit.client.secret=client-secret
+            reddit.subreddit=test
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testReloadSwapsValidConfigurationAndIgnoresInvalidOne() throws Exception {
+        Path file = dir.resolve(Config.CONFIG_FILE);
+        Files.writeString(file, CREDENTIALS + "bot.poll.interval=300\n");
+        Config initial = new Config(file);
+        LinkedBlockingQueue<Config> reloads = new LinkedBlockingQueue<>();
+
+        try (ConfigWatcher watcher = new ConfigWatcher(file, initial, (previous, loaded) -> reloads.add(loaded))) {
+            Files.writeString(file, CREDENTIALS + "bot.poll.interval=60\n");
+            Config loaded = reloads.poll(10, TimeUnit.SECONDS);
+            assertNotNull(loaded);
+            assertSame(loaded, watcher.current());
+            assertEquals(60, watcher.current().getPollInterval());
+            assertEquals(300, initial.getPollInterval());
+
+            // An invalid file keeps the last valid configuration
+            Files.writeString(file, CREDENTIALS + "bot.poll.interval=soon\n");
+            assertNull(reloads.poll(2, TimeUnit.SECONDS));
+            assertSame(loaded, watcher.current());
+        }
+    }
+}
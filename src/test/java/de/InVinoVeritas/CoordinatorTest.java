@@ -0,0 +1,60 @@
+package de.InVinoVeritas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoordinatorTest {
+    private static final Path TEST_DIR = Path.of("test_coordination");
+
+    @BeforeEach
+    public void setup() throws IOException {
+        cleanup();
+        Files.createDirectories(TEST_DIR);
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        if (Files.exists(TEST_DIR)) {
+            try (Stream<Path> files = Files.walk(TEST_DIR)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRefresh_spreadsShardsAndFailsOver() throws IOException {
+        Coordinator first = new Coordinator(TEST_DIR, "first", 2, 60);
+        try (Coordinator second = new Coordinator(TEST_DIR, "second", 2, 60)) {
+            try {
+                assertEquals(Set.of(0, 1), first.refresh());
+                assertEquals(Set.of(), second.refresh());
+
+                // The first instance gives a shard up to the second one, which takes it with its next refresh
+                assertEquals(1, first.refresh().size());
+                Set<Integer> taken = second.refresh();
+                assertEquals(1, taken.size());
+                assertEquals(1, first.refresh().size());
+                int shard = taken.iterator().next();
+                assertTrue(second.isHeld(shard));
+                assertFalse(first.isHeld(shard));
+            } finally {
+                first.close();
+            }
+
+            // The second instance takes over all shards as soon as the first one is gone
+            assertEquals(Set.of(0, 1), second.refresh());
+        }
+    }
+}
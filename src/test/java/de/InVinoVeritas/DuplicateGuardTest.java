@@ -0,0 +1,37 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.Headline;
+import de.InVinoVeritas.RyzomRedditBot.NewsItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class DuplicateGuardTest {
+    private static final String URL = "https://app.ryzom.com/app_releasenotes/index.php?lang=en&id=7";
+
+    @Test
+    public void testIndexFindsPostsByLinkOrTitleAndDate() {
+        NewsItem news = new NewsItem("2025-03-07: Rotate Outposts & more", URL, null,
+                List.of(new Headline("Features", List.of("Outposts rotate"))));
+        String text = MarkdownRenderer.render(news, true).getFirst();
+
+        DuplicateGuard.Index index = new DuplicateGuard.Index();
+        // Listed like Reddit lists it, HTML escaped
+        index.add("RyzomTest", "abc", "Rotate Outposts &amp; more", text.replace("&", "&amp;"), null);
+        // The same title on another day is another news
+        index.add("ryzomtest", "def", "Rotate Outposts & more", "Originally published on 2024-01-01", null);
+
+        assertEquals("abc", index.find("ryzomtest", news));
+        assertNull(index.find("other", news));
+
+        // Without its link, e.g. an older rendering, the post is still found by title and date
+        DuplicateGuard.Index byTitle = new DuplicateGuard.Index();
+        byTitle.add("ryzomtest", "ghi", "Rotate Outposts &amp; more", "Originally published on 2025-03-07\n", null);
+        assertEquals("ghi", byTitle.find("RyzomTest", news));
+        assertNull(byTitle.find("ryzomtest", new NewsItem("2025-03-08: Rotate Outposts & more", URL + "0", null,
+                List.of())));
+    }
+}
@@ -0,0 +1,311 @@
+package de.InVinoVeritas;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for the parts of the Reddit API the bot uses: the OAuth token endpoint, submit, flair and comments,
+ * and the listings of the submissions and comments of the bot.
+ * <p>
+ * Every API call is delayed by a fixed latency and counted against a rate limit window, reported through the same
+ * {@code X-Ratelimit-*} headers as Reddit and answered with HTTP 429 once the window is used up. Responses can be
+ * dropped after a call took effect, like a response lost to a read timeout.
+ */
+final class FakeRedditApi implements AutoCloseable {
+    // Delay of a dropped response, after which the client timed out on it
+    static final long DROP_DELAY_MILLIS = 3_000;
+
+    private static final Pattern NEWS_LINK = Pattern.compile("\\[Read more here]\\(([^)]+)\\)");
+
+    /**
+     * A submission received by the API.
+     *
+     * @param id              Submission ID handed out
+     * @param subreddit       Target subreddit name
+     * @param newsUrl         URL of the news linked in the post
+     * @param receivedAtNanos {@link System#nanoTime()} when the submit arrived
+     * @param title           Title of the post
+     */
+    record Submission(String id, String subreddit, String newsUrl, long receivedAtNanos, String title) {
+    }
+
+    private final HttpServer server;
+    private final long latencyMillis;
+    private final int requestsPerWindow;
+    private final long windowNanos;
+
+    private final List<Submission> submissions = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> flairs = new ConcurrentHashMap<>();
+    private final Map<String, Integer> comments = new ConcurrentHashMap<>();
+    private final List<String[]> commentBodies = new CopyOnWriteArrayList<>();
+    private final Map<String, AtomicInteger> droppedResponses = new ConcurrentHashMap<>();
+    private final Set<HttpExchange> dropping = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> edits = new ConcurrentHashMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private volatile boolean refuseFlairs;
+
+    private long windowStartNanos = System.nanoTime();
+    private int windowUsed;
+    private int requests;
+    private int rateLimited;
+    private int logins;
+
+    /**
+     * Starts the API on a free local port.
+     *
+     * @param latencyMillis     Delay of every API call
+     * @param requestsPerWindow Requests allowed per rate limit window
+     * @param windowSeconds     Length of the rate limit window
+     * @throws IOException if the server could not be started
+     */
+    FakeRedditApi(long latencyMillis, int requestsPerWindow, int windowSeconds) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.requestsPerWindow = requestsPerWindow;
+        this.windowNanos = TimeUnit.SECONDS.toNanos(windowSeconds);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        // Platform threads, a handler waiting out a dropped response pins a virtual thread to its carrier
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    /**
+     * Returns the base URL to configure as {@code reddit.base.url}.
+     *
+     * @return Base URL of the API
+     */
+    String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    List<Submission> getSubmissions() {
+        return submissions;
+    }
+
+    int getFlairs() {
+        return flairs.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    int getComments() {
+        return comments.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Drops the responses of the next calls to a path after they took effect, by answering only after
+     * {@link #DROP_DELAY_MILLIS}, when a client with a shorter read timeout gave up.
+     *
+     * @param path  Path of the API call, e.g. {@code /api/submit}
+     * @param count Number of responses to drop
+     */
+    void dropResponses(String path, int count) {
+        droppedResponses.put(path, new AtomicInteger(count));
+    }
+
+    /**
+     * Refuses all flair updates, like a subreddit without the flair template.
+     */
+    void refuseFlairs() {
+        refuseFlairs = true;
+    }
+
+    int getEdits() {
+        return edits.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    synchronized int getRequests() {
+        return requests;
+    }
+
+    synchronized int getRateLimited() {
+        return rateLimited;
+    }
+
+    synchronized int getLogins() {
+        return logins;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> form = parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+
+        // Reddit does not count token requests against the API rate limit
+        if (path.equals("/api/v1/access_token")) {
+            synchronized (this) {
+                logins++;
+            }
+            respond(exchange, 200, "{\"access_token\":\"load-test\",\"token_type\":\"bearer\",\"expires_in\":3600,\"scope\":\"*\"}");
+            return;
+        }
+
+        if (!takeRequest(exchange)) {
+            respond(exchange, 429, "{\"message\":\"Too Many Requests\",\"error\":429}");
+            return;
+        }
+        sleep(latencyMillis);
+        AtomicInteger drops = droppedResponses.get(path);
+        if (drops != null && drops.getAndDecrement() > 0) {
+            dropping.add(exchange);
+        }
+
+        if (path.equals("/api/submit")) {
+            Matcher matcher = NEWS_LINK.matcher(form.getOrDefault("text", ""));
+            String id = Integer.toString(lastId.incrementAndGet(), 36);
+            submissions.add(new Submission(id, form.get("sr"), matcher.find() ? matcher.group(1) : null, System.nanoTime(),
+                    form.getOrDefault("title", "")));
+            respond(exchange, 200, "{\"json\":{\"errors\":[],\"data\":{\"url\":\"" + baseUrl() + "/comments/" + id +
+                    "\",\"drafts_count\":0,\"id\":\"" + id + "\",\"name\":\"t3_" + id + "\"}}}");
+        } else if (path.matches("/user/[^/]+/submitted")) {
+            String query = Objects.toString(exchange.getRequestURI().getRawQuery(), "");
+            respond(exchange, 200, listSubmissions(parseForm(query)));
+        } else if (path.matches("/r/[^/]+/api/selectflair") && refuseFlairs) {
+            respond(exchange, 400, "{\"message\":\"Bad Request\",\"error\":400}");
+        } else if (path.matches("/r/[^/]+/api/selectflair")) {
+            flairs.merge(form.getOrDefault("link", ""), 1, Integer::sum);
+            respond(exchange, 200, "{\"json\":{\"errors\":[]}}");
+        } else if (path.matches("/user/[^/]+/comments")) {
+            respond(exchange, 200, listComments());
+        } else if (path.equals("/api/comment")) {
+            String parent = form.getOrDefault("thing_id", "");
+            comments.merge(parent, 1, Integer::sum);
+            String id = Integer.toString(lastId.incrementAndGet(), 36);
+            commentBodies.add(new String[]{id, parent, form.getOrDefault("text", "")});
+            respond(exchange, 200, "{\"json\":{\"errors\":[],\"data\":{\"things\":[{\"kind\":\"t1\",\"data\":{\"id\":\"" +
+                    id + "\",\"name\":\"t1_" + id + "\",\"parent_id\":\"" + parent + "\"}}]}}}");
+        } else if (path.equals("/api/editusertext")) {
+            edits.merge(form.getOrDefault("thing_id", ""), 1, Integer::sum);
+            respond(exchange, 200, "{\"json\":{\"errors\":[],\"data\":{\"things\":[]}}}");
+        } else {
+            respond(exchange, 404, "{\"message\":\"Not Found\",\"error\":404}");
+        }
+    }
+
+    /**
+     * Counts a request against the current rate limit window and sets the rate limit headers.
+     *
+     * @return false if the window is used up
+     */
+    private synchronized boolean takeRequest(HttpExchange exchange) {
+        requests++;
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= windowNanos) {
+            windowStartNanos = now;
+            windowUsed = 0;
+        }
+
+        // Rounded up, so a client waiting for the reset never comes back before the window is over
+        long resetSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(windowStartNanos + windowNanos - now + 999_999_999));
+        boolean allowed = windowUsed < requestsPerWindow;
+        if (allowed) {
+            windowUsed++;
+        } else {
+            rateLimited++;
+            exchange.getResponseHeaders().set("Retry-After", Long.toString(resetSeconds));
+        }
+        exchange.getResponseHeaders().set("X-Ratelimit-Used", Integer.toString(windowUsed));
+        exchange.getResponseHeaders().set("X-Ratelimit-Remaining", Integer.toString(requestsPerWindow - windowUsed));
+        exchange.getResponseHeaders().set("X-Ratelimit-Reset", Long.toString(resetSeconds));
+        return allowed;
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                form.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+
+    /**
+     * Lists the submissions newest first, a page of {@code limit} after the submission named by {@code after}, with
+     * the text escaped like Reddit does.
+     */
+    private String listSubmissions(Map<String, String> query) {
+        int limit = Integer.parseInt(query.getOrDefault("limit", "25"));
+        List<Submission> newestFirst = submissions.reversed();
+        int start = 0;
+        if (query.containsKey("after")) {
+            while (start < newestFirst.size() && !("t3_" + newestFirst.get(start).id()).equals(query.get("after"))) {
+                start++;
+            }
+            start++;
+        }
+
+        StringBuilder children = new StringBuilder();
+        int end = Math.min(newestFirst.size(), start + limit);
+        for (int i = start; i < end; i++) {
+            Submission submission = newestFirst.get(i);
+            String text = submission.newsUrl() != null ? "[Read more here](" + submission.newsUrl() + ")" : "";
+            children.append(children.isEmpty() ? "" : ",").append("{\"kind\":\"t3\",\"data\":{\"title\":")
+                    .append(Sink.jsonString(submission.title().replace("&", "&amp;")))
+                    .append(",\"selftext\":").append(Sink.jsonString(text.replace("&", "&amp;")))
+                    .append(",\"subreddit\":").append(Sink.jsonString(submission.subreddit()))
+                    .append(",\"id\":\"").append(submission.id()).append("\",\"name\":\"t3_").append(submission.id())
+                    .append("\"}}");
+        }
+        String after = end < newestFirst.size() ? "\"t3_" + newestFirst.get(end - 1).id() + "\"" : "null";
+        return "{\"kind\":\"Listing\",\"data\":{\"after\":" + after + ",\"children\":[" + children + "]}}";
+    }
+
+    /**
+     * Lists the comments newest first, all on one page, with the text escaped like Reddit does.
+     */
+    private String listComments() {
+        StringBuilder children = new StringBuilder();
+        for (String[] comment : commentBodies.reversed()) {
+            children.append(children.isEmpty() ? "" : ",").append("{\"kind\":\"t1\",\"data\":{\"body\":")
+                    .append(Sink.jsonString(comment[2].replace("&", "&amp;")))
+                    .append(",\"link_id\":").append(Sink.jsonString(comment[1]))
+                    .append(",\"subreddit\":\"\",\"id\":\"").append(comment[0]).append("\"}}");
+        }
+        return "{\"kind\":\"Listing\",\"data\":{\"after\":null,\"children\":[" + children + "]}}";
+    }
+
+    private void respond(HttpExchange exchange, int code, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        if (dropping.remove(exchange)) {
+            // Answer after the client gave up waiting
+            sleep(DROP_DELAY_MILLIS);
+        }
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
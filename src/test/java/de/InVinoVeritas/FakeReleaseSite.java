@@ -0,0 +1,231 @@
+package de.InVinoVeritas;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for the release notes page, serving a growing list of generated news.
+ * <p>
+ * The page has the structure of the real one and supports conditional requests through an ETag that changes with
+ * every published or edited news. The image of each news is served with a fixed ETag. The time each news was published is kept to measure the latency until it is posted.
+ */
+final class FakeReleaseSite implements AutoCloseable {
+    static final String PAGE_PATH = "/app_releasenotes/index.php";
+    static final String IMAGE_PATH = "/app_releasenotes/images/";
+
+    private final HttpServer server;
+    private final List<Long> publishedAtNanos = new ArrayList<>();
+    private final Set<Integer> edited = new HashSet<>();
+    private int version;
+    private String page;
+    private int requests;
+    private int notModified;
+    private int imageRequests;
+    private int imagesNotModified;
+
+    /**
+     * Starts the site on a free local port.
+     *
+     * @throws IOException if the server could not be started
+     */
+    FakeReleaseSite() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(PAGE_PATH, this::handle);
+        server.createContext(IMAGE_PATH, this::handleImage);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        page = render();
+    }
+
+    /**
+     * Returns the URL of the release notes page.
+     *
+     * @return URL of the page
+     */
+    String pageUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + PAGE_PATH + "?lang=en";
+    }
+
+    /**
+     * Returns the URL of a news, as linked on the page.
+     *
+     * @param id ID of the news
+     * @return URL of the news
+     */
+    String newsUrl(int id) {
+        return pageUrl() + "&id=" + id;
+    }
+
+    /**
+     * Adds a news to the top of the page.
+     *
+     * @return ID of the news
+     */
+    synchronized int publish() {
+        publishedAtNanos.add(System.nanoTime());
+        version++;
+        page = render();
+        return publishedAtNanos.size();
+    }
+
+    /**
+     * Adds a key point to a published news, as when a release note is corrected.
+     *
+     * @param id ID of the news
+     */
+    synchronized void edit(int id) {
+        edited.add(id);
+        version++;
+        page = render();
+    }
+
+    /**
+     * Returns the number of edited news.
+     *
+     * @return Number of news edited at least once
+     */
+    synchronized int getEdited() {
+        return edited.size();
+    }
+
+    /**
+     * Returns when a news was published.
+     *
+     * @param id ID of the news
+     * @return {@link System#nanoTime()} of the publication
+     */
+    synchronized long publishedAtNanos(int id) {
+        return publishedAtNanos.get(id - 1);
+    }
+
+    /**
+     * Returns the number of published news.
+     *
+     * @return Number of news on the page
+     */
+    synchronized int size() {
+        return publishedAtNanos.size();
+    }
+
+    synchronized int getRequests() {
+        return requests;
+    }
+
+    synchronized int getNotModified() {
+        return notModified;
+    }
+
+    synchronized int getImageRequests() {
+        return imageRequests;
+    }
+
+    synchronized int getImagesNotModified() {
+        return imagesNotModified;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String etag;
+        String body;
+        boolean unchanged;
+        synchronized (this) {
+            requests++;
+            etag = "\"" + version + "\"";
+            body = page;
+            unchanged = etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"));
+            if (unchanged) {
+                notModified++;
+            }
+        }
+
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (unchanged) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void handleImage(HttpExchange exchange) throws IOException {
+        String name = exchange.getRequestURI().getPath().substring(IMAGE_PATH.length());
+        String etag = "\"" + name + "\"";
+        boolean unchanged = etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"));
+        synchronized (this) {
+            imageRequests++;
+            if (unchanged) {
+                imagesNotModified++;
+            }
+        }
+
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (unchanged) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        // Stands in for a JPEG of a typical size
+        byte[] bytes = new byte[64 * 1024];
+        exchange.getResponseHeaders().set("Content-Type", "image/jpeg");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String render() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html>\n<html>\n<head><meta charset=\"utf-8\"><title>Ryzom - Release Notes</title></head>\n")
+                .append("<body>\n<table style=\"margin: 0 auto; width: 90%; max-width: 1000px\">\n")
+                .append("<tr><td style=\"text-align: center\"><a href=\"").append(pageUrl())
+                .append("\" target=\"_blank\">Release-Information</a></td></tr>\n");
+
+        // Newest news first, like the real page
+        LocalDate firstDate = LocalDate.of(2020, 1, 1);
+        for (int id = publishedAtNanos.size(); id >= 1; id--) {
+            sb.append("<tr><td style=\"font-size: 18px; padding-top: 20px\"><a href=\"")
+                    .append(newsUrl(id).replace("&", "&amp;")).append("\" target=\"_blank\">")
+                    .append(firstDate.plusDays(id)).append(": Load test news ").append(id).append("</a></td></tr>\n")
+                    .append("<tr><td>\n<img src=\"").append(pageUrl().replace(PAGE_PATH + "?lang=en", IMAGE_PATH))
+                    .append(id).append(".jpg\" style=\"width: 100%\" alt=\"\">\n<table style=\"width: 100%\">\n");
+            for (String headline : new String[]{"Features", "Bug fixes"}) {
+                sb.append("<tr><td colspan=\"2\" style=\"border-bottom: 1px solid #08c\"><b>").append(headline)
+                        .append("</b></td></tr>\n<tr><td style=\"width: 20px\"></td><td>");
+                for (int point = 1; point <= 3; point++) {
+                    sb.append("<span style=\"color: #08c\">✪</span> ").append(headline).append(" point ")
+                            .append(point).append(" of news ").append(id).append(".<br>\n");
+                }
+                if (edited.contains(id)) {
+                    sb.append("<span style=\"color: #08c\">✪</span> Corrected ").append(headline.toLowerCase())
+                            .append(" of news ").append(id).append(".<br>\n");
+                }
+                sb.append("</td></tr>\n");
+            }
+            sb.append("</table>\n</td></tr>\n");
+        }
+        sb.append("</table>\n</body>\n</html>\n");
+        return sb.toString();
+    }
+}
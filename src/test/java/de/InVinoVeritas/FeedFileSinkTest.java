@@ -0,0 +1,81 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.Headline;
+import de.InVinoVeritas.RyzomRedditBot.NewsItem;
+import de.InVinoVeritas.RyzomRedditBot.RenderedNews;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FeedFileSinkTest {
+    private static final String PAGE_URL = "https://app.ryzom.com/app_releasenotes/index.php?lang=en";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testPublishKeepsEntriesOfEarlierRunsNewestFirst() throws Exception {
+        Path file = dir.resolve("ryzom");
+        new FeedFileSink(file, "Ryzom", PAGE_URL, 2).publish(rendered(1));
+
+        // A new run reads the entries back and adds to them
+        FeedFileSink sink = new FeedFileSink(file, "Ryzom", PAGE_URL, 2);
+        sink.publish(rendered(2));
+        sink.publish(rendered(3));
+
+        String atom = Files.readString(dir.resolve("ryzom.xml"));
+        String json = Files.readString(dir.resolve("ryzom.json"));
+        assertTrue(atom.indexOf("News 3 &lt;b&gt;") < atom.indexOf("News 2 &lt;b&gt;"));
+        assertFalse(atom.contains("News 1"));
+        assertTrue(atom.contains("<content type=\"text\">Fixes&#10;- Point &quot;3&quot;</content>"));
+        assertTrue(json.indexOf("\"title\":\"News 3 <b>\"") < json.indexOf("\"title\":\"News 2 <b>\""));
+        assertFalse(json.contains("News 1"));
+        assertTrue(json.contains("\"content_text\":\"Fixes\\n- Point \\\"3\\\"\""));
+        assertTrue(json.contains("\"date_published\":\"2025-01-03T00:00:00Z\""));
+        assertEquals(2, json.lines().filter(line -> line.startsWith("    {")).count());
+        assertTrue(json.lines().filter(line -> line.startsWith("    {")).findFirst().orElseThrow().endsWith(","));
+    }
+
+    @Test
+    public void testFailedWriteIsRetriedWithoutDuplicateEntries() throws Exception {
+        Path file = dir.resolve("ryzom");
+        FeedFileSink sink = new FeedFileSink(file, "Ryzom", PAGE_URL, 10);
+        sink.publish(rendered(1));
+
+        // The JSON Feed cannot be replaced while a directory is in its place
+        Files.delete(dir.resolve("ryzom.json"));
+        Files.createDirectories(dir.resolve("ryzom.json").resolve("in-the-way"));
+        assertThrows(IOException.class, () -> sink.publish(rendered(2)));
+        Files.delete(dir.resolve("ryzom.json").resolve("in-the-way"));
+        Files.delete(dir.resolve("ryzom.json"));
+
+        // The retry and a news published again each leave a single entry
+        sink.publish(rendered(2));
+        sink.publish(rendered(2));
+        for (String feed : List.of("ryzom.xml", "ryzom.json")) {
+            String text = Files.readString(dir.resolve(feed));
+            assertEquals(1, text.split("News 2 ", -1).length - 1, feed);
+            assertEquals(1, text.split("News 1 ", -1).length - 1, feed);
+        }
+
+        // Both files still hold the same entries, so a new run keeps them
+        new FeedFileSink(file, "Ryzom", PAGE_URL, 10).publish(rendered(3));
+        assertTrue(Files.readString(dir.resolve("ryzom.xml")).contains("News 1 "));
+    }
+
+    private static RenderedNews rendered(int id) {
+        NewsItem news = new NewsItem("2025-01-0" + id + ": News " + id + " <b>", PAGE_URL + "&id=" + id, null,
+                List.of(new Headline("Fixes", List.of("Point \"" + id + "\""))));
+        return new RenderedNews(news, MarkdownRenderer.title(news), MarkdownRenderer.render(news, true),
+                MarkdownRenderer.text(news));
+    }
+}
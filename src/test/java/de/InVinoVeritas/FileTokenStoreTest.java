@@ -0,0 +1,50 @@
+package de.InVinoVeritas;
+
+import net.dean.jraw.oauth.OAuthData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileTokenStoreTest {
+    private static final String TEST_TOKEN_FILE = "test_reddit_token.properties";
+
+    @BeforeEach
+    @AfterEach
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(Path.of(TEST_TOKEN_FILE));
+    }
+
+    @Test
+    public void testStoreLatest_survivesReopenAndIsPrivate() throws IOException {
+        Date expiration = new Date(System.currentTimeMillis() + 3_600_000);
+        FileTokenStore.open(TEST_TOKEN_FILE).storeLatest("bot", OAuthData.create("token", List.of("submit", "flair"),
+                null, expiration));
+
+        OAuthData stored = FileTokenStore.open(TEST_TOKEN_FILE).fetchLatest("bot");
+        assertNotNull(stored);
+        assertEquals("token", stored.getAccessToken());
+        assertEquals(List.of("submit", "flair"), stored.getScopes());
+        assertEquals(expiration, stored.getExpiration());
+        assertNull(stored.getRefreshToken());
+        assertEquals("rw-------",
+                PosixFilePermissions.toString(Files.getPosixFilePermissions(Path.of(TEST_TOKEN_FILE))));
+    }
+
+    @Test
+    public void testDeleteLatest_removesToken() throws IOException {
+        FileTokenStore store = FileTokenStore.open(TEST_TOKEN_FILE);
+        store.storeLatest("bot", OAuthData.create("token", List.of(), null, new Date()));
+        store.deleteLatest("bot");
+
+        assertNull(FileTokenStore.open(TEST_TOKEN_FILE).fetchLatest("bot"));
+    }
+}
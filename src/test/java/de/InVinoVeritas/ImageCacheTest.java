@@ -0,0 +1,112 @@
+package de.InVinoVeritas;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageCacheTest {
+    private static final String TEST_CACHE_DIR = "test_image_cache";
+
+    private final OkHttpClient httpClient = new OkHttpClient();
+    private HttpServer server;
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    @BeforeEach
+    public void setup() throws IOException {
+        cleanup();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String etag = "\"" + exchange.getRequestURI().getPath() + "\"";
+            if (exchange.getRequestURI().getPath().startsWith("/missing")) {
+                exchange.sendResponseHeaders(404, -1);
+            } else if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                downloads.incrementAndGet();
+                exchange.getResponseHeaders().set("ETag", etag);
+                exchange.sendResponseHeaders(200, 1000);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(new byte[1000]);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        if (server != null) {
+            server.stop(0);
+        }
+        Path dir = Path.of(TEST_CACHE_DIR);
+        if (Files.exists(dir)) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPrefetch_revalidatesInsteadOfDownloadingAgain() throws Exception {
+        Path image = ImageCache.open(TEST_CACHE_DIR, 10_000, 2, httpClient).prefetch(url("/a.jpg")).get();
+        assertEquals(1000, Files.size(image));
+
+        // A new run finds the image in the cache and only revalidates it
+        Path revalidated = ImageCache.open(TEST_CACHE_DIR, 10_000, 2, httpClient).prefetch(url("/a.jpg")).get();
+        assertEquals(image, revalidated);
+        assertEquals(1, downloads.get());
+    }
+
+    @Test
+    public void testPrefetch_evictsLeastRecentlyUsed() throws Exception {
+        ImageCache cache = ImageCache.open(TEST_CACHE_DIR, 2_500, 2, httpClient);
+        Path first = cache.prefetch(url("/1.jpg")).get();
+        Path second = cache.prefetch(url("/2.jpg")).get();
+        cache.prefetch(url("/1.jpg")).get();
+        Path third = cache.prefetch(url("/3.jpg")).get();
+
+        assertTrue(Files.exists(first));
+        assertFalse(Files.exists(second));
+        assertTrue(Files.exists(third));
+    }
+
+    @Test
+    public void testPrefetch_recordsMissingImage() throws Exception {
+        ImageCache cache = ImageCache.open(TEST_CACHE_DIR, 10_000, 2, httpClient);
+        assertNull(cache.prefetch(url("/missing.jpg")).get());
+        assertTrue(cache.isMissing(url("/missing.jpg")));
+        assertFalse(cache.isMissing(url("/a.jpg")));
+    }
+
+    @Test
+    public void testPrefetch_skipsInvalidUrlWithoutBlockingDownloads() throws Exception {
+        ImageCache cache = ImageCache.open(TEST_CACHE_DIR, 10_000, 1, httpClient);
+        assertNull(cache.prefetch("/images/relative.jpg").get(5, TimeUnit.SECONDS));
+        assertNull(cache.prefetch("http://bad host/a.jpg").get(5, TimeUnit.SECONDS));
+        assertTrue(cache.isMissing("/images/relative.jpg"));
+
+        // The only download slot is still free
+        assertEquals(1000, Files.size(cache.prefetch(url("/a.jpg")).get(5, TimeUnit.SECONDS)));
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+}
@@ -0,0 +1,40 @@
+package de.InVinoVeritas;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class KeyPointCollectorTest {
+    @Test
+    public void testCollectSplitsAtMarkers() throws IOException {
+        List<String> keyPoints = new ArrayList<>();
+        KeyPointCollector.collect(keyPointsCell(), keyPoints);
+
+        // Text before the first marker and the empty key point are dropped
+        assertEquals(List.of(
+                "First point spread over lines.",
+                "Second nested deeply point",
+                "Third point with ✪ not a marker",
+                "Fourth point with a block after it"), keyPoints);
+    }
+
+    @Test
+    public void testCollectWithoutMarkersFindsNothing() {
+        List<String> keyPoints = new ArrayList<>();
+        KeyPointCollector.collect(Jsoup.parseBodyFragment("<div>Only an introduction</div>").body(), keyPoints);
+        assertEquals(List.of(), keyPoints);
+    }
+
+    private static Element keyPointsCell() throws IOException {
+        try (InputStream in = KeyPointCollectorTest.class.getResourceAsStream("key_points.html")) {
+            return Jsoup.parse(in, "UTF-8", "").select("td").get(1);
+        }
+    }
+}
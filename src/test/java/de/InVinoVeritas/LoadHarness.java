@@ -0,0 +1,233 @@
+package de.InVinoVeritas;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Offline end-to-end load test of the bot.
+ * <p>
+ * Runs the bot in daemon mode in a separate JVM against a {@link FakeReleaseSite} publishing news at a fixed rate and a
+ * {@link FakeRedditApi}, then reports the posting throughput and the latency from the page change to the submit.
+ * Run with {@code ./gradlew loadTest -PloadTestArgs="--rate=2 --duration=60"}, options are:
+ * <ul>
+ *     <li>{@code --initial}: news already on the page when the bot starts (default 10)</li>
+ *     <li>{@code --rate}: news published per second (default 1)</li>
+ *     <li>{@code --duration}: seconds to publish news for (default 30)</li>
+ *     <li>{@code --edits}: news corrected after they were published, one per second after publishing (default 0)</li>
+ *     <li>{@code --poll-interval}: poll interval of the bot in seconds (default 1)</li>
+ *     <li>{@code --api-latency}: milliseconds every API call takes (default 50)</li>
+ *     <li>{@code --rate-limit}: API calls allowed per rate limit window (default 600)</li>
+ *     <li>{@code --window}: length of the rate limit window in seconds (default 600)</li>
+ *     <li>{@code --instances}: bot instances coordinating over the working directory (default 1)</li>
+ *     <li>{@code --crash-after}: seconds after which the first instance is killed, 0 for never (default 0)</li>
+ *     <li>{@code --drain-timeout}: seconds to wait for the last news to be posted (default 120)</li>
+ *     <li>{@code --dir}: working directory of the bot, cleared first (default build/loadtest)</li>
+ * </ul>
+ */
+public class LoadHarness {
+    private static final String SUBREDDIT = "loadtest";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int initial = Integer.parseInt(options.getOrDefault("initial", "10"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "1"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int edits = Integer.parseInt(options.getOrDefault("edits", "0"));
+        int pollInterval = Integer.parseInt(options.getOrDefault("poll-interval", "1"));
+        long apiLatency = Long.parseLong(options.getOrDefault("api-latency", "50"));
+        int rateLimit = Integer.parseInt(options.getOrDefault("rate-limit", "600"));
+        int window = Integer.parseInt(options.getOrDefault("window", "600"));
+        int drainTimeout = Integer.parseInt(options.getOrDefault("drain-timeout", "120"));
+        int instances = Integer.parseInt(options.getOrDefault("instances", "1"));
+        int crashAfter = Integer.parseInt(options.getOrDefault("crash-after", "0"));
+        Path dir = Path.of(options.getOrDefault("dir", "build/loadtest"));
+
+        try (FakeReleaseSite site = new FakeReleaseSite();
+             FakeRedditApi api = new FakeRedditApi(apiLatency, rateLimit, window)) {
+            for (int i = 0; i < initial; i++) {
+                site.publish();
+            }
+
+            prepareWorkingDirectory(dir, site, api, pollInterval);
+            if (instances > 1) {
+                Files.writeString(dir.resolve("config.properties"), "coordination.enabled=true\n", StandardCharsets.UTF_8,
+                        StandardOpenOption.APPEND);
+            }
+            List<Process> bots = new ArrayList<>();
+            for (int i = 1; i <= instances; i++) {
+                bots.add(startBot(dir, instances == 1 ? "bot.out" : "bot-" + i + ".out"));
+            }
+            long startNanos = System.nanoTime();
+            if (crashAfter > 0) {
+                // Killed without shutdown hook, the other instances have to take its leases over
+                Thread.ofVirtual().start(() -> {
+                    try {
+                        TimeUnit.SECONDS.sleep(crashAfter);
+                        bots.getFirst().destroyForcibly();
+                        System.out.println("Killed the first instance after " + crashAfter + " seconds.");
+                    } catch (InterruptedException ignored) {
+                    }
+                });
+            }
+            try {
+                // Publish news at a fixed rate, independent of how long publishing takes
+                long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+                long endNanos = startNanos + TimeUnit.SECONDS.toNanos(duration);
+                for (long next = startNanos + periodNanos; next < endNanos && isAnyAlive(bots); next += periodNanos) {
+                    TimeUnit.NANOSECONDS.sleep(next - System.nanoTime());
+                    site.publish();
+                }
+
+                // Correct the most recent news, which the bot checks for changes
+                for (int i = 0; i < edits && isAnyAlive(bots); i++) {
+                    TimeUnit.SECONDS.sleep(1);
+                    site.edit(site.size() - i % Math.min(site.size(), 5));
+                }
+
+                // Wait for the bot to catch up
+                long drainEndNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainTimeout);
+                while ((api.getSubmissions().size() < site.size() || api.getEdits() < site.getEdited()) && isAnyAlive(bots)
+                        && System.nanoTime() < drainEndNanos) {
+                    Thread.sleep(100);
+                }
+            } finally {
+                // Lets the shutdown hook of the daemon run
+                for (Process bot : bots) {
+                    bot.destroy();
+                }
+                for (Process bot : bots) {
+                    if (!bot.waitFor(30, TimeUnit.SECONDS)) {
+                        bot.destroyForcibly();
+                    }
+                }
+            }
+
+            report(site, api, startNanos, dir);
+        }
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Invalid option: " + arg + ", expected --name=value");
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Clears the working directory and writes a configuration pointing the bot at the stand-ins.
+     */
+    static void prepareWorkingDirectory(Path dir, FakeReleaseSite site, FakeRedditApi api, int pollInterval)
+            throws IOException {
+        if (Files.exists(dir)) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+        Files.createDirectories(dir);
+
+        String config = String.join("\n",
+                "reddit.username=load-test",
+                "reddit.password=load-test",
+                "reddit.client.id=load-test",
+                "reddit.client.secret=load-test",
+                "reddit.base.url=" + api.baseUrl(),
+                "bot.poll.interval=" + pollInterval,
+                "feeds=load",
+                "feed.load.url=" + site.pageUrl(),
+                "feed.load.subreddits=" + SUBREDDIT,
+                "images.prefetch=true",
+                "");
+        Files.writeString(dir.resolve("config.properties"), config, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isAnyAlive(List<Process> bots) {
+        return bots.stream().anyMatch(Process::isAlive);
+    }
+
+    /**
+     * Starts the bot in daemon mode with the class path of this JVM.
+     */
+    private static Process startBot(Path dir, String outputFile) throws IOException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                RyzomRedditBot.class.getName(), "--daemon")
+                .directory(dir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(new File(dir.toFile(), outputFile))
+                .start();
+    }
+
+    private static void report(FakeReleaseSite site, FakeRedditApi api, long startNanos, Path dir) {
+        Map<String, Integer> idsByUrl = new HashMap<>();
+        for (int id = 1; id <= site.size(); id++) {
+            idsByUrl.put(site.newsUrl(id), id);
+        }
+
+        List<Long> latencies = new ArrayList<>();
+        Map<String, Integer> postsByUrl = new HashMap<>();
+        long lastPostNanos = startNanos;
+        for (FakeRedditApi.Submission submission : api.getSubmissions()) {
+            Integer id = idsByUrl.get(submission.newsUrl());
+            if (id == null || postsByUrl.merge(submission.newsUrl(), 1, Integer::sum) > 1) {
+                continue;
+            }
+            // News published before the bot started count from its start
+            long changedAtNanos = Math.max(site.publishedAtNanos(id), startNanos);
+            latencies.add(submission.receivedAtNanos() - changedAtNanos);
+            lastPostNanos = Math.max(lastPostNanos, submission.receivedAtNanos());
+        }
+        Collections.sort(latencies);
+
+        int duplicates = api.getSubmissions().size() - latencies.size();
+        double seconds = (lastPostNanos - startNanos) / 1e9;
+
+        System.out.println();
+        System.out.println("Load test results (bot output in " + dir.resolve("bot.out") + ")");
+        System.out.printf(Locale.ROOT, "  News published:    %d%n", site.size());
+        System.out.printf(Locale.ROOT, "  News posted:       %d (%d missing, %d duplicate or unknown)%n",
+                latencies.size(), site.size() - latencies.size(), duplicates);
+        System.out.printf(Locale.ROOT, "  Flairs set:        %d%n", api.getFlairs());
+        System.out.printf(Locale.ROOT, "  Comments posted:   %d%n", api.getComments());
+        System.out.printf(Locale.ROOT, "  News edited:       %d (%d posts edited)%n", site.getEdited(), api.getEdits());
+        System.out.printf(Locale.ROOT, "  Throughput:        %.2f news/s over %.1f s%n",
+                seconds > 0 ? latencies.size() / seconds : 0, seconds);
+        System.out.printf(Locale.ROOT, "  Latency p50:       %s%n", percentile(latencies, 50));
+        System.out.printf(Locale.ROOT, "  Latency p90:       %s%n", percentile(latencies, 90));
+        System.out.printf(Locale.ROOT, "  Latency p99:       %s%n", percentile(latencies, 99));
+        System.out.printf(Locale.ROOT, "  Latency max:       %s%n", percentile(latencies, 100));
+        System.out.printf(Locale.ROOT, "  Page requests:     %d (%d not modified)%n", site.getRequests(), site.getNotModified());
+        System.out.printf(Locale.ROOT, "  Image requests:    %d (%d not modified)%n", site.getImageRequests(),
+                site.getImagesNotModified());
+        System.out.printf(Locale.ROOT, "  API requests:      %d (%d rate limited)%n", api.getRequests(), api.getRateLimited());
+    }
+
+    /**
+     * Returns a percentile of sorted latencies by the nearest-rank method.
+     */
+    static String percentile(List<Long> sortedNanos, int percentile) {
+        if (sortedNanos.isEmpty()) {
+            return "n/a";
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sortedNanos.size());
+        return String.format(Locale.ROOT, "%.0f ms", sortedNanos.get(Math.max(rank, 1) - 1) / 1e6);
+    }
+}
@@ -0,0 +1,61 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.Headline;
+import de.InVinoVeritas.RyzomRedditBot.NewsItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MarkdownRendererTest {
+    private static final String URL = "https://app.ryzom.com/app_releasenotes/index.php?news=1";
+
+    @Test
+    public void testRenderEscapesTextAndKeepsShortNewsInOnePart() {
+        NewsItem news = new NewsItem("2025-03-07: Patch *1*", URL, null,
+                List.of(new Headline("Fixes [misc]", List.of("No more `bugs`_"))));
+
+        List<String> parts = MarkdownRenderer.render(news, true);
+
+        assertEquals(List.of("## Fixes \\[misc\\]\n- No more \\`bugs\\`\\_\n\n" +
+                "\nOriginally published on 2025-03-07\n\n[Read more here](" + URL + ")\n"), parts);
+        assertEquals("Patch *1*", MarkdownRenderer.title(news));
+    }
+
+    @Test
+    public void testTitleIsShortenedToLimit() {
+        NewsItem news = new NewsItem("2025-03-07: " + "x".repeat(500), URL, null, List.of());
+
+        String title = MarkdownRenderer.title(news);
+
+        assertEquals(MarkdownRenderer.MAX_TITLE_LENGTH, title.length());
+        assertTrue(title.endsWith("…"));
+    }
+
+    @Test
+    public void testRenderSplitsLongNewsAtHeadlines() {
+        List<Headline> headlines = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            headlines.add(new Headline("Headline " + i, List.of("a".repeat(900), "b".repeat(900))));
+        }
+        NewsItem news = new NewsItem("2025-03-07: Big patch", URL, null, headlines);
+
+        List<String> parts = MarkdownRenderer.render(news, true);
+
+        assertTrue(parts.size() > 2);
+        assertTrue(parts.getFirst().length() <= MarkdownRenderer.MAX_SELFTEXT_LENGTH);
+        assertTrue(parts.getFirst().endsWith("[Read more here](" + URL + ")\n"));
+        StringBuilder body = new StringBuilder(parts.getFirst().substring(0, parts.getFirst().indexOf("\n*Continued")));
+        for (String comment : parts.subList(1, parts.size())) {
+            assertTrue(comment.length() <= MarkdownRenderer.MAX_COMMENT_LENGTH);
+            assertTrue(comment.startsWith("## Headline "));
+            body.append(comment);
+        }
+        for (int i = 0; i < 40; i++) {
+            assertTrue(body.indexOf("## Headline " + i + "\n") >= 0);
+        }
+    }
+}
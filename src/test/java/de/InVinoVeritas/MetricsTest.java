@@ -0,0 +1,33 @@
+package de.InVinoVeritas;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsTest {
+    @Test
+    public void testScrape_prometheusTextFormat() {
+        long posted = Metrics.Counter.ITEMS_POSTED.get();
+        Metrics.posted();
+        Metrics.start(Metrics.Stage.RENDER).stop();
+
+        String text = Metrics.scrape();
+        assertTrue(text.contains("# TYPE ryzombot_items_posted_total counter\nryzombot_items_posted_total " + (posted + 1) + "\n"));
+        assertTrue(text.contains("# TYPE ryzombot_stage_duration_seconds histogram\n"));
+        assertTrue(text.matches("(?s).*ryzombot_stage_duration_seconds_bucket\\{stage=\"render\",le=\"\\+Inf\"} [1-9].*"));
+        assertTrue(text.contains("ryzombot_stage_duration_seconds_count{stage=\"render\"}"));
+    }
+
+    @Test
+    public void testServe_listensOnLoopbackByDefault() throws IOException {
+        HttpServer server = Metrics.serve("", 0);
+        try {
+            assertTrue(server.getAddress().getAddress().isLoopbackAddress());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.Headline;
+import de.InVinoVeritas.RyzomRedditBot.NewsItem;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class NewsCollectorTest {
+    private static final String PAGE_URL = "https://app.ryzom.com/app_releasenotes/index.php?lang=en";
+
+    @Test
+    public void testFetchNewsFromHtmlParsesSavedPage() throws IOException {
+        List<NewsItem> news = RyzomRedditBot.fetchNewsFromHtml(releaseNotes(), null);
+
+        // The header without a link is no news, its rows are skipped
+        assertEquals(3, news.size());
+
+        NewsItem event = news.get(0);
+        assertEquals("2025-04-15", event.date);
+        assertEquals("New Event Hide n Hype", event.title);
+        assertEquals(PAGE_URL + "&id=512", event.url);
+        assertEquals("https://app.ryzom.com/app_releasenotes/images/hide_n_hype.jpg", event.imageUrl);
+        assertEquals(List.of(
+                new Headline("Event", List.of("Find the hidden Hype NPCs in all capitals.",
+                        "Rewards are sent by mail.")),
+                new Headline("Fixes", List.of("Corrected the event timer."))), event.headlines);
+
+        NewsItem outposts = news.get(1);
+        assertEquals("2025-03-07", outposts.date);
+        assertEquals("Rotate Outposts and Autocomplete !", outposts.title);
+        assertEquals(PAGE_URL + "&id=498", outposts.url);
+        assertNull(outposts.imageUrl);
+        assertEquals(List.of(new Headline("Features", List.of("Outposts rotate every week.",
+                "The chat autocompletes player names."))), outposts.headlines);
+
+        NewsItem winter = news.get(2);
+        assertEquals("2025-01-20", winter.date);
+        assertEquals("Winter Patch", winter.title);
+        assertEquals(PAGE_URL + "&id=470", winter.url);
+        assertEquals("https://app.ryzom.com/app_releasenotes/images/winter.png", winter.imageUrl);
+        assertEquals(List.of(new Headline("Balance", List.of("Reduced the cost of magic amplifiers."))),
+                winter.headlines);
+    }
+
+    @Test
+    public void testFetchNewsFromHtmlStopsAtKnownNews() throws IOException {
+        List<NewsItem> news = RyzomRedditBot.fetchNewsFromHtml(releaseNotes(), (PAGE_URL + "&id=498")::equals);
+        assertEquals(List.of(PAGE_URL + "&id=512"), news.stream().map(item -> item.url).toList());
+    }
+
+    private static Document releaseNotes() throws IOException {
+        try (InputStream in = NewsCollectorTest.class.getResourceAsStream("release_notes.html")) {
+            return Jsoup.parse(in, "UTF-8", PAGE_URL);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package de.InVinoVeritas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OutboxTest {
+    private static final String TEST_OUTBOX_FILE = "test_outbox.log";
+
+    private static final String URL = "https://app.ryzom.com/app_releasenotes/index.php?lang=en&id=1";
+
+    @BeforeEach
+    public void setup() throws IOException {
+        cleanup();
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(Path.of(TEST_OUTBOX_FILE));
+    }
+
+    private static Outbox.Entry intent(Outbox outbox, String key, List<String> comments) {
+        return outbox.intent("default", key, "ryzom", URL, "2024-01-01", "Patch\tnotes", "Patch", "Text\nwith lines",
+                comments, new byte[]{1, 2, 3}, 42);
+    }
+
+    @Test
+    public void testReopenRecoversUnfinishedEntries() throws IOException {
+        try (Outbox outbox = Outbox.open(TEST_OUTBOX_FILE)) {
+            intent(outbox, "unsubmitted", List.of("first", "second"));
+            Outbox.Entry partial = intent(outbox, "partial", List.of("first", "second"));
+            partial.submitted("abc");
+            partial.flaired();
+            partial.commented(1);
+            Outbox.Entry complete = intent(outbox, "complete", List.of());
+            complete.submitted("def");
+            complete.flaired();
+            intent(outbox, "dropped", List.of()).done();
+        }
+
+        try (Outbox outbox = Outbox.open(TEST_OUTBOX_FILE)) {
+            List<Outbox.Entry> unfinished = outbox.unfinished();
+            assertEquals(List.of("unsubmitted", "partial"), unfinished.stream().map(Outbox.Entry::key).toList());
+
+            Outbox.Entry unsubmitted = unfinished.get(0);
+            assertNull(unsubmitted.submissionId());
+            assertEquals("Patch\tnotes", unsubmitted.title());
+            assertEquals("Text\nwith lines", unsubmitted.content());
+            assertEquals(List.of("first", "second"), unsubmitted.comments());
+            assertArrayEquals(new byte[]{1, 2, 3}, unsubmitted.digest());
+            assertEquals(42, unsubmitted.fingerprint());
+            assertTrue(outbox.isPending("unsubmitted"));
+
+            Outbox.Entry partial = unfinished.get(1);
+            assertEquals("abc", partial.submissionId());
+            assertTrue(partial.isFlaired());
+            assertEquals(1, partial.commentsPosted());
+            assertFalse(outbox.isPending("partial"));
+        }
+    }
+
+    @Test
+    public void testReplaysAreCountedAcrossReopens() throws IOException {
+        try (Outbox outbox = Outbox.open(TEST_OUTBOX_FILE)) {
+            assertEquals(1, intent(outbox, "news", List.of()).replayed());
+        }
+        try (Outbox outbox = Outbox.open(TEST_OUTBOX_FILE)) {
+            assertEquals(2, outbox.unfinished().getFirst().replayed());
+        }
+        try (Outbox outbox = Outbox.open(TEST_OUTBOX_FILE)) {
+            assertEquals(3, outbox.unfinished().getFirst().replayed());
+        }
+    }
+
+    @Test
+    public void testTornLastRecordIsIgnored() throws IOException {
+        try (Outbox outbox = Outbox.open(TEST_OUTBOX_FILE)) {
+            intent(outbox, "news", List.of());
+        }
+        // A crash in the middle of writing the submission record
+        Files.writeString(Path.of(TEST_OUTBOX_FILE), "S\t1\tab", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (Outbox outbox = Outbox.open(TEST_OUTBOX_FILE)) {
+            Outbox.Entry entry = outbox.unfinished().getFirst();
+            assertNull(entry.submissionId());
+
+            // New records still start on a line of their own
+            entry.submitted("abc");
+        }
+        try (Outbox outbox = Outbox.open(TEST_OUTBOX_FILE)) {
+            assertEquals("abc", outbox.unfinished().getFirst().submissionId());
+        }
+    }
+
+    @Test
+    public void testJournalIsTruncatedWhenAllEntriesFinished() throws IOException {
+        try (Outbox outbox = Outbox.open(TEST_OUTBOX_FILE)) {
+            Outbox.Entry entry = intent(outbox, "news", List.of("comment"));
+            entry.sync();
+            assertTrue(Files.size(Path.of(TEST_OUTBOX_FILE)) > 0);
+
+            entry.submitted("abc");
+            entry.flaired();
+            entry.commented(1);
+            outbox.sync();
+            assertEquals(0, Files.size(Path.of(TEST_OUTBOX_FILE)));
+
+            // Appending continues at the start of the truncated file
+            intent(outbox, "next", List.of());
+        }
+        try (Outbox outbox = Outbox.open(TEST_OUTBOX_FILE)) {
+            assertEquals(List.of("next"), outbox.unfinished().stream().map(Outbox.Entry::key).toList());
+        }
+    }
+}
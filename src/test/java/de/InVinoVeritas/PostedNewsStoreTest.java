@@ -0,0 +1,122 @@
+package de.InVinoVeritas;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PostedNewsStoreTest {
+    private static final String TEST_STORE_FILE = "test_posted_news.db";
+    private static final String TEST_LEGACY_FILE = "test_posted_news.txt";
+
+    private static final String URL = "https://app.ryzom.com/app_releasenotes/index.php?lang=en&id=1";
+
+    @BeforeEach
+    public void setup() throws IOException {
+        cleanup();
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(Path.of(TEST_STORE_FILE));
+        Files.deleteIfExists(Path.of(TEST_STORE_FILE + ".tmp"));
+        Files.deleteIfExists(Path.of(TEST_LEGACY_FILE));
+        Files.deleteIfExists(Path.of(TEST_LEGACY_FILE + ".migrated"));
+    }
+
+    @Test
+    public void testPut_survivesReopen() throws IOException {
+        byte[] digest = new byte[PostedNewsStore.DIGEST_LENGTH];
+        digest[0] = 42;
+
+        try (PostedNewsStore store = PostedNewsStore.open(TEST_STORE_FILE, TEST_LEGACY_FILE)) {
+            assertFalse(store.contains(URL));
+            store.put(URL, "abc123", digest, 7);
+            assertTrue(store.contains(URL));
+        }
+
+        try (PostedNewsStore store = PostedNewsStore.open(TEST_STORE_FILE, TEST_LEGACY_FILE)) {
+            PostedNewsStore.Entry entry = store.get(URL);
+            assertNotNull(entry);
+            assertEquals("abc123", entry.submissionId());
+            assertArrayEquals(digest, entry.contentDigest());
+            assertEquals(7, entry.contentFingerprint());
+            assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    public void testPut_growsTable() throws IOException {
+        try (PostedNewsStore store = PostedNewsStore.open(TEST_STORE_FILE, TEST_LEGACY_FILE)) {
+            for (int i = 0; i < 5000; i++) {
+                store.put(URL + i, "id" + i, new byte[PostedNewsStore.DIGEST_LENGTH], i);
+            }
+            assertEquals(5000, store.size());
+            for (int i = 0; i < 5000; i++) {
+                assertEquals("id" + i, store.get(URL + i).submissionId());
+            }
+            assertFalse(store.contains(URL + 5000));
+        }
+
+        // The rebuilt file replaced the store file
+        assertFalse(Files.exists(Path.of(TEST_STORE_FILE + ".tmp")));
+        try (PostedNewsStore store = PostedNewsStore.open(TEST_STORE_FILE, TEST_LEGACY_FILE)) {
+            assertEquals(5000, store.size());
+            assertEquals("id4999", store.get(URL + 4999).submissionId());
+        }
+    }
+
+    @Test
+    public void testOpen_finishesInterruptedRebuild() throws IOException {
+        try (PostedNewsStore store = PostedNewsStore.open(TEST_STORE_FILE, TEST_LEGACY_FILE)) {
+            store.put(URL, "abc123", new byte[PostedNewsStore.DIGEST_LENGTH], 7);
+        }
+        // A crash while the rebuilt table was copied over the store file
+        Files.copy(Path.of(TEST_STORE_FILE), Path.of(TEST_STORE_FILE + ".tmp"));
+        Files.write(Path.of(TEST_STORE_FILE), new byte[100]);
+
+        try (PostedNewsStore store = PostedNewsStore.open(TEST_STORE_FILE, TEST_LEGACY_FILE)) {
+            assertEquals("abc123", store.get(URL).submissionId());
+        }
+        assertFalse(Files.exists(Path.of(TEST_STORE_FILE + ".tmp")));
+    }
+
+    @Test
+    public void testOpen_ignoresIncompleteRebuild() throws IOException {
+        try (PostedNewsStore store = PostedNewsStore.open(TEST_STORE_FILE, TEST_LEGACY_FILE)) {
+            store.put(URL, "abc123", new byte[PostedNewsStore.DIGEST_LENGTH], 7);
+        }
+        // A crash while the rebuilt table was written to the temporary file
+        Files.write(Path.of(TEST_STORE_FILE + ".tmp"), new byte[100]);
+
+        try (PostedNewsStore store = PostedNewsStore.open(TEST_STORE_FILE, TEST_LEGACY_FILE)) {
+            assertEquals("abc123", store.get(URL).submissionId());
+        }
+        assertFalse(Files.exists(Path.of(TEST_STORE_FILE + ".tmp")));
+    }
+
+    @Test
+    public void testOpen_migratesLegacyFile() throws IOException {
+        Files.writeString(Path.of(TEST_LEGACY_FILE), URL.hashCode() + "\ninvalid\n");
+
+        try (PostedNewsStore store = PostedNewsStore.open(TEST_STORE_FILE, TEST_LEGACY_FILE)) {
+            assertEquals(1, store.size());
+            assertTrue(store.contains(URL));
+            assertFalse(store.contains(URL + "other"));
+        }
+
+        // The legacy entry was replaced by the full fingerprint
+        try (PostedNewsStore store = PostedNewsStore.open(TEST_STORE_FILE, TEST_LEGACY_FILE)) {
+            assertEquals(1, store.size());
+            assertTrue(store.contains(URL));
+        }
+
+        assertFalse(Files.exists(Path.of(TEST_LEGACY_FILE)));
+        assertTrue(Files.exists(Path.of(TEST_LEGACY_FILE + ".migrated")));
+    }
+}
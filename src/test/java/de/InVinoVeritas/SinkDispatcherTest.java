@@ -0,0 +1,100 @@
+package de.InVinoVeritas;
+
+import de.InVinoVeritas.RyzomRedditBot.NewsItem;
+import de.InVinoVeritas.RyzomRedditBot.RenderedNews;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SinkDispatcherTest {
+    private static final String URL = "https://app.ryzom.com/app_releasenotes/index.php?lang=en&id=1";
+
+    @Test
+    public void testSlowSinkDoesNotDelayOthersAndFailuresAreRetried() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger flakyCalls = new AtomicInteger();
+        LinkedBlockingQueue<String> published = new LinkedBlockingQueue<>();
+        SinkDispatcher dispatcher = new SinkDispatcher(List.of(
+                sink("slow", () -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }, published),
+                sink("flaky", () -> {
+                    if (flakyCalls.incrementAndGet() == 1) {
+                        throw new IOException("Connection reset");
+                    }
+                }, published)), 10, 2);
+
+        Set<String> recorded = new HashSet<>();
+        NewsItem news = new NewsItem("2025-01-01: News", URL, null, List.of());
+        RenderedNews rendered = new RenderedNews(news, "News", List.of("News"), "News");
+        dispatcher.dispatch("en", rendered, recorded::contains);
+        // Queued already, not queued again
+        dispatcher.dispatch("en", rendered, recorded::contains);
+
+        // The flaky sink delivers after one retry while the slow one is still busy
+        assertEquals("flaky", published.poll(10, TimeUnit.SECONDS));
+        assertEquals(2, flakyCalls.get());
+        assertFalse(dispatcher.isDelivered("en", URL, recorded::contains));
+
+        release.countDown();
+        assertTrue(dispatcher.close(10));
+        List<String> keys = new ArrayList<>();
+        assertEquals(2, dispatcher.drainDelivered(keys::add));
+        recorded.addAll(keys);
+        assertTrue(dispatcher.isDelivered("en", URL, recorded::contains));
+        assertEquals(List.of("slow"), List.copyOf(published));
+    }
+
+    @Test
+    public void testUnconfirmedPublicationIsNotRetried() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        SinkDispatcher dispatcher = new SinkDispatcher(List.of(sink("webhook", () -> {
+            calls.incrementAndGet();
+            throw new Sink.UnconfirmedException("Timed out", new IOException("timeout"));
+        }, new LinkedBlockingQueue<>())), 10, 3);
+
+        NewsItem news = new NewsItem("2025-01-01: News", URL, null, List.of());
+        dispatcher.dispatch("en", new RenderedNews(news, "News", List.of("News"), "News"), key -> false);
+        assertTrue(dispatcher.close(10));
+
+        assertEquals(1, calls.get());
+        List<String> keys = new ArrayList<>();
+        assertEquals(1, dispatcher.drainDelivered(keys::add));
+        assertEquals(List.of(SinkDispatcher.key("webhook", "en", URL)), keys);
+    }
+
+    private interface Action {
+        void run() throws IOException;
+    }
+
+    private static Sink sink(String name, Action action, LinkedBlockingQueue<String> published) {
+        return new Sink() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public void publish(RenderedNews news) throws IOException {
+                action.run();
+                published.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package de.InVinoVeritas;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the packaged bot like a cron job, one poll per process, against a {@link FakeReleaseSite} and a
+ * {@link FakeRedditApi}. Every run finds one new news, so it logs in and posts like a real run with news.
+ * <p>
+ * With {@code --mode=train}, the bot runs once with the given JVM options, e.g. to record a class data sharing archive
+ * ({@code ./gradlew cdsArchive}) or native image metadata ({@code ./gradlew nativeMetadata}). Otherwise the startup of
+ * each build that exists is compared over several runs ({@code ./gradlew startupComparison}). Options are:
+ * <ul>
+ *     <li>{@code --jar}: the shadow jar</li>
+ *     <li>{@code --cds}: class data sharing archive of the shadow jar, compared if it exists</li>
+ *     <li>{@code --native}: native executable, compared if it exists</li>
+ *     <li>{@code --runs}: measured runs per build, after one warm-up run (default 10)</li>
+ *     <li>{@code --java-options}: space-separated JVM options of the training run</li>
+ *     <li>{@code --java}: Java executable of the training run, e.g. of a GraalVM (default the one of this JVM)</li>
+ *     <li>{@code --dir}: working directory of the bot, cleared first (default build/startup)</li>
+ * </ul>
+ */
+public class StartupHarness {
+    private static final int RUN_TIMEOUT_SECONDS = 60;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadHarness.parseOptions(args);
+        String java = ProcessHandle.current().info().command().orElse("java");
+        String jar = options.get("jar");
+        Path dir = Path.of(options.getOrDefault("dir", "build/startup"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "10"));
+
+        try (FakeReleaseSite site = new FakeReleaseSite();
+             FakeRedditApi api = new FakeRedditApi(0, Integer.MAX_VALUE, 600)) {
+            if ("train".equals(options.get("mode"))) {
+                List<String> command = new ArrayList<>(List.of(options.getOrDefault("java", java)));
+                String javaOptions = options.getOrDefault("java-options", "").trim();
+                if (!javaOptions.isEmpty()) {
+                    command.addAll(List.of(javaOptions.split("\\s+")));
+                }
+                command.addAll(List.of("-jar", jar));
+
+                site.publish();
+                LoadHarness.prepareWorkingDirectory(dir, site, api, 1);
+                long nanos = run(command, dir);
+                System.out.printf(Locale.ROOT, "Training run took %.0f ms (bot output in %s)%n", nanos / 1e6,
+                        dir.resolve("bot.out"));
+                return;
+            }
+
+            Map<String, List<String>> builds = new LinkedHashMap<>();
+            builds.put("jar", List.of(java, "-jar", jar));
+            String cds = options.get("cds");
+            if (cds != null && Files.exists(Path.of(cds))) {
+                builds.put("jar + AppCDS", List.of(java, "-XX:SharedArchiveFile=" + cds, "-jar", jar));
+            }
+            String nativeImage = options.get("native");
+            if (nativeImage != null && Files.exists(Path.of(nativeImage))) {
+                builds.put("native image", List.of(Path.of(nativeImage).toAbsolutePath().toString()));
+            }
+
+            System.out.println();
+            System.out.printf(Locale.ROOT, "Startup comparison, %d runs each (bot output in %s/*/bot.out)%n", runs, dir);
+            System.out.printf(Locale.ROOT, "  %-14s %8s %8s %8s %8s%n", "Build", "min", "p50", "p90", "logins");
+            for (Map.Entry<String, List<String>> build : builds.entrySet()) {
+                Path buildDir = dir.resolve(build.getKey().replaceAll("\\W+", "-"));
+                LoadHarness.prepareWorkingDirectory(buildDir, site, api, 1);
+
+                List<Long> times = new ArrayList<>();
+                int loginsBefore = api.getLogins();
+                for (int i = 0; i <= runs; i++) {
+                    site.publish();
+                    long nanos = run(build.getValue(), buildDir);
+                    if (i > 0) {
+                        times.add(nanos);
+                    }
+                }
+                Collections.sort(times);
+                System.out.printf(Locale.ROOT, "  %-14s %8s %8s %8s %8d%n", build.getKey(), LoadHarness.percentile(times, 0),
+                        LoadHarness.percentile(times, 50), LoadHarness.percentile(times, 90), api.getLogins() - loginsBefore);
+            }
+        }
+    }
+
+    /**
+     * Runs the bot once and waits for it to exit.
+     *
+     * @return Wall time of the run in nanoseconds
+     */
+    private static long run(List<String> command, Path dir) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process bot = new ProcessBuilder(command)
+                .directory(dir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(new File(dir.toFile(), "bot.out")))
+                .start();
+        if (!bot.waitFor(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            bot.destroyForcibly();
+            throw new IllegalStateException("Bot did not finish within " + RUN_TIMEOUT_SECONDS + " seconds: " + command);
+        }
+        long nanos = System.nanoTime() - start;
+        if (bot.exitValue() != 0) {
+            throw new IllegalStateException("Bot exited with " + bot.exitValue() + ": " + command);
+        }
+        return nanos;
+    }
+}
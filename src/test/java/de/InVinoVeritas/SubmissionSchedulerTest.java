@@ -0,0 +1,149 @@
+package de.InVinoVeritas;
+
+import net.dean.jraw.RedditClient;
+import net.dean.jraw.http.OkHttpNetworkAdapter;
+import net.dean.jraw.http.UserAgent;
+import net.dean.jraw.oauth.Credentials;
+import net.dean.jraw.oauth.OAuthData;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SubmissionSchedulerTest {
+    private static final String URL = "https://app.ryzom.com/app_releasenotes/index.php?lang=en&id=7";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testLostResponsesAreLookedUpInsteadOfPostedAgain() throws Exception {
+        try (FakeRedditApi api = new FakeRedditApi(0, 1000, 60);
+             Outbox outbox = Outbox.open(dir.resolve("outbox.log").toString())) {
+            // Both calls reach Reddit, but their responses are lost
+            api.dropResponses("/api/submit", 1);
+            api.dropResponses("/api/comment", 1);
+
+            Outbox.Entry entry = outbox.intent("default", "key", "ryzomtest", URL, "2025-03-07", "Rotate Outposts",
+                    "Patch", "[Read more here](" + URL + ")\n\nOriginally published on 2025-03-07",
+                    List.of("Continued"), new byte[PostedNewsStore.DIGEST_LENGTH], 1);
+            List<String> recorded = new ArrayList<>();
+            SubmissionScheduler.Batch batch = new SubmissionScheduler(3, 1).begin(client(api), () -> true);
+            assertTrue(batch.enqueue(new SubmissionScheduler.SubmissionJob(entry.subreddit(), entry.title(),
+                    entry.content(), entry.comments(), entry.flairText(), recorded::add, entry)));
+            assertTrue(batch.finish());
+
+            assertEquals(1, api.getSubmissions().size());
+            assertEquals(List.of(api.getSubmissions().getFirst().id()), recorded);
+            assertEquals(1, api.getComments());
+            assertEquals(1, api.getFlairs());
+            assertTrue(outbox.unfinished().isEmpty());
+        }
+    }
+
+    @Test
+    public void testEditJobEditsSubmission() throws Exception {
+        try (FakeRedditApi api = new FakeRedditApi(0, 1000, 60)) {
+            List<String> edited = new ArrayList<>();
+            SubmissionScheduler.Batch batch = new SubmissionScheduler(3, 1).begin(client(api), () -> true);
+            assertTrue(batch.enqueue(new SubmissionScheduler.EditJob("abc", "New content", () -> edited.add("abc"))));
+            assertTrue(batch.finish());
+
+            assertEquals(1, api.getEdits());
+            assertEquals(List.of("abc"), edited);
+            assertTrue(api.getSubmissions().isEmpty());
+        }
+    }
+
+    @Test
+    public void testRefusedFlairFinishesTheEntry() throws Exception {
+        try (FakeRedditApi api = new FakeRedditApi(0, 1000, 60);
+             Outbox outbox = Outbox.open(dir.resolve("outbox.log").toString())) {
+            api.refuseFlairs();
+
+            Outbox.Entry entry = outbox.intent("default", "key", "ryzomtest", URL, "2025-03-07", "Rotate Outposts",
+                    "Missing", "[Read more here](" + URL + ")", List.of("Continued"),
+                    new byte[PostedNewsStore.DIGEST_LENGTH], 1);
+            SubmissionScheduler.Batch batch = new SubmissionScheduler(3, 1).begin(client(api), () -> true);
+            assertTrue(batch.enqueue(new SubmissionScheduler.SubmissionJob(entry.subreddit(), entry.title(),
+                    entry.content(), entry.comments(), entry.flairText(), id -> {
+            }, entry)));
+            assertTrue(batch.finish());
+
+            // The comments are still posted, and no replay tries the flair again
+            assertEquals(1, api.getSubmissions().size());
+            assertEquals(0, api.getFlairs());
+            assertEquals(1, api.getComments());
+            assertTrue(outbox.unfinished().isEmpty());
+        }
+    }
+
+    @Test
+    public void testRateLimitWaitLongerThanCallTimeoutCostsNoAttempt() throws Exception {
+        // Two requests per window of three seconds, the client may only hold a request back for half a second
+        try (FakeRedditApi api = new FakeRedditApi(0, 2, 3);
+             Outbox outbox = Outbox.open(dir.resolve("outbox.log").toString())) {
+            OkHttpClient http = http(api).newBuilder()
+                    .callTimeout(1, TimeUnit.SECONDS)
+                    .addInterceptor(new RedditRateLimiter())
+                    .build();
+
+            Outbox.Entry entry = outbox.intent("default", "key", "ryzomtest", URL, "2025-03-07", "Rotate Outposts",
+                    "Patch", "[Read more here](" + URL + ")", List.of("Continued", "Continued again"),
+                    new byte[PostedNewsStore.DIGEST_LENGTH], 1);
+            SubmissionScheduler.Batch batch = new SubmissionScheduler(1, 1).begin(client(http), () -> true);
+            assertTrue(batch.enqueue(new SubmissionScheduler.SubmissionJob(entry.subreddit(), entry.title(),
+                    entry.content(), entry.comments(), entry.flairText(), id -> {
+            }, entry)));
+            assertTrue(batch.finish());
+
+            // Every call succeeded with a single attempt, and none was sent over the limit
+            assertEquals(1, api.getSubmissions().size());
+            assertEquals(1, api.getFlairs());
+            assertEquals(2, api.getComments());
+            assertEquals(0, api.getRateLimited());
+            assertTrue(outbox.unfinished().isEmpty());
+        }
+    }
+
+    /**
+     * Creates a client of the fake API, logged in as {@code bot}.
+     */
+    private static RedditClient client(FakeRedditApi api) {
+        return client(http(api));
+    }
+
+    /**
+     * Creates an HTTP client sending all requests to the fake API, giving up on a dropped response.
+     */
+    private static OkHttpClient http(FakeRedditApi api) {
+        HttpUrl base = HttpUrl.get(api.baseUrl());
+        return new OkHttpClient.Builder()
+                .retryOnConnectionFailure(false)
+                .readTimeout(FakeRedditApi.DROP_DELAY_MILLIS / 3, TimeUnit.MILLISECONDS)
+                .addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                        .url(chain.request().url().newBuilder()
+                                .scheme(base.scheme()).host(base.host()).port(base.port()).build())
+                        .build()))
+                .build();
+    }
+
+    /**
+     * Creates a Reddit client logged in as {@code bot}.
+     */
+    private static RedditClient client(OkHttpClient http) {
+        OAuthData token = OAuthData.create("test", List.of("*"), null,
+                new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)));
+        return new RedditClient(new OkHttpNetworkAdapter(new UserAgent("test"), http), token,
+                Credentials.script("bot", "secret", "id", "client-secret"));
+    }
+}